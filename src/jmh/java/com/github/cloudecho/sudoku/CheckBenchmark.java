@@ -0,0 +1,40 @@
+package com.github.cloudecho.sudoku;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Model#isSolved()} and {@link Sudoku#checkInput(Model, int, int, byte)}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CheckBenchmark {
+    private Model solved;
+    private Model puzzle;
+    private int cell;
+
+    @Setup
+    public void setup() {
+        Puzzles.quiet();
+        solved = Puzzles.model(Puzzles.SOLVED);
+        puzzle = Puzzles.model(Puzzles.MODEL_MAIN);
+    }
+
+    @Benchmark
+    public boolean isSolved() {
+        return solved.isSolved();
+    }
+
+    @Benchmark
+    public boolean checkInput() {
+        // walk every cell with the digit of the solution
+        cell = (cell + 1) % 81;
+        final byte digit = (byte) (Puzzles.SOLVED.charAt(cell) - '0');
+        return Sudoku.checkInput(puzzle, cell / 9, cell % 9, digit);
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.cloudecho.sudoku;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Model#random()} and {@link Model#hideDigits(float, boolean)}.
+ * Hiding always starts from the fixed {@link Puzzles#SOLVED} grid.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class GenerateBenchmark {
+    @Param({"0.25", "0.50", "0.75"})
+    float level;
+
+    @Param({"true", "false"})
+    boolean unique;
+
+    private Model solved;
+
+    @Setup
+    public void setup() {
+        Puzzles.quiet();
+        solved = Puzzles.model(Puzzles.SOLVED);
+    }
+
+    @Benchmark
+    public Model random() {
+        final Model model = new Model(9, 9);
+        model.random();
+        return model;
+    }
+
+    @Benchmark
+    public Model hideDigits() {
+        final Model model = solved.modelClone();
+        model.hideDigits(level, unique);
+        return model;
+    }
+}
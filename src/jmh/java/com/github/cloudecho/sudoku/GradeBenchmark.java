@@ -0,0 +1,34 @@
+package com.github.cloudecho.sudoku;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Grader#grade(int[])}, the cost of rating one candidate puzzle during graded generation.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class GradeBenchmark {
+    @Param({"MODEL_MAIN", "SEVENTEEN_CLUES", "EASY"})
+    String puzzle;
+
+    private int[] cells;
+    private Grader grader;
+
+    @Setup
+    public void setup() {
+        Puzzles.quiet();
+        cells = Puzzles.model(Puzzles.byName(puzzle)).toCells();
+        grader = new Grader(3);
+    }
+
+    @Benchmark
+    public Grader.Grade grade() {
+        return grader.grade(cells);
+    }
+}
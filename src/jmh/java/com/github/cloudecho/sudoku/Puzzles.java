@@ -0,0 +1,68 @@
+package com.github.cloudecho.sudoku;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Fixed benchmark inputs.
+ */
+final class Puzzles {
+    /**
+     * The puzzle solved in {@link Model#main(String[])}.
+     */
+    static final String MODEL_MAIN =
+            "800000000003600000070090200050007000000045700000100030001000068008500010090000400";
+    static final String NORVIG_HARDEST =
+            "4.....8.5.3..........7......2.....6.....8.4......1.......6.3.7.5..2.....1.4......";
+    static final String SEVENTEEN_CLUES =
+            "..............3.85..1.2.......5.7.....4...1...9.......5......73..2.1........4...9";
+    static final String DIAGONAL_HARD =
+            "85...24..72......9..4.........1.7..23.5...9...4...........8..7..17..........36.4.";
+
+    /**
+     * The solution of {@link #MODEL_MAIN}.
+     */
+    static final String SOLVED =
+            "812753649943682175675491283154237896369845721287169534521974368438526917796318452";
+
+    /**
+     * {@link #SOLVED} with one cell hidden in each subgrid, easy enough for the random solver.
+     */
+    static final String EASY =
+            ".12753649943.82175675491.831.42378963698.57212871695.452.97436843852.91779631845.";
+
+    private Puzzles() {
+    }
+
+    static String byName(String name) {
+        switch (name) {
+            case "MODEL_MAIN":
+                return MODEL_MAIN;
+            case "NORVIG_HARDEST":
+                return NORVIG_HARDEST;
+            case "SEVENTEEN_CLUES":
+                return SEVENTEEN_CLUES;
+            case "DIAGONAL_HARD":
+                return DIAGONAL_HARD;
+            case "SOLVED":
+                return SOLVED;
+            case "EASY":
+                return EASY;
+            default:
+                throw new IllegalArgumentException("unknown puzzle: " + name);
+        }
+    }
+
+    static Model model(String line) {
+        final Model model = new Model(9, 9);
+        for (int i = 0; i < 81; i++) {
+            final char ch = line.charAt(i);
+            model.set(i / 9, i % 9, ch == '.' ? 0 : (byte) (ch - '0'));
+        }
+        return model;
+    }
+
+    static void quiet() {
+        Logger.getLogger("sudoku").setLevel(Level.WARNING);
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.cloudecho.sudoku;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Model#solve()} with the random engine on 1/2/4/8 {@code SOLVING_THREADS}.
+ * The random search does not finish on the hard puzzles, so it runs on {@link Puzzles#EASY}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RandomSolveBenchmark {
+    @Param({"1", "2", "4", "8"})
+    String threads;
+
+    private Model model;
+
+    @Setup
+    public void setup() {
+        Puzzles.quiet();
+        System.setProperty(Model.KEY_SOLVING_ENGINE, Model.ENGINE_RANDOM);
+        System.setProperty(Model.KEY_SOLVING_THREADS, threads);
+        model = Puzzles.model(Puzzles.EASY);
+    }
+
+    @Benchmark
+    public Model solve() {
+        final Model c = model.modelClone();
+        c.solve();
+        return c;
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.cloudecho.sudoku;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Model#solve()} on known-hard puzzles with the deterministic engines.
+ * Each invocation solves a fresh clone of the puzzle.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SolveBenchmark {
+    @Param({"MODEL_MAIN", "NORVIG_HARDEST", "SEVENTEEN_CLUES", "DIAGONAL_HARD"})
+    String puzzle;
+
+    @Param({Model.ENGINE_PROPAGATION, Model.ENGINE_DLX})
+    String engine;
+
+    private Model model;
+
+    @Setup
+    public void setup() {
+        Puzzles.quiet();
+        System.setProperty(Model.KEY_SOLVING_ENGINE, engine);
+        model = Puzzles.model(Puzzles.byName(puzzle));
+    }
+
+    @Benchmark
+    public Model solve() {
+        final Model c = model.modelClone();
+        c.solve();
+        return c;
+    }
+}
@@ -0,0 +1,235 @@
+package com.github.cloudecho.sudoku;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless batch solver over line-oriented puzzle files.
+ * <p>
+ * Each input line holds a puzzle as 81 characters, {@code 1-9} for a given and {@code .} or {@code 0}
+ * for an empty cell; anything after the 81st character is ignored. Every input line yields exactly
+ * one output line: the solution, or a line starting with {@code #} for blank lines, comments
+ * and puzzles that are malformed or have no solution.
+ * <p>
+ * Lines flow through a bounded {@link OrderedPipeline}: the reader cuts them into chunks, the chunks are solved
+ * by a pool of workers, and the writer emits the results in input order. At most
+ * {@code queue depth + 1} chunks are in flight, so memory use does not grow with the input.
+ * A regular input file is memory-mapped (see {@link MappedPuzzleReader}) unless {@code BATCH_MMAP=false}.
+ *
+ * <pre>
+ * java -cp sudoku.jar com.github.cloudecho.sudoku.Batch [input|-] [output|-]
+ * </pre>
+ */
+public class Batch {
+    static final String KEY_BATCH_THREADS = "BATCH_THREADS";
+    static final String KEY_BATCH_CHUNK = "BATCH_CHUNK";
+    static final String KEY_BATCH_QUEUE = "BATCH_QUEUE";
+    static final String KEY_BATCH_MMAP = "BATCH_MMAP";
+    static final int DEFAULT_BATCH_CHUNK = 1024;
+
+    private static final String STDIO = "-";
+    private static final int LENGTH = 81;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final int threads;
+    private final int chunkSize;
+    private final int queueDepth;
+
+    private final AtomicLong solved = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public Batch(int threads, int chunkSize, int queueDepth) {
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+        this.queueDepth = queueDepth;
+    }
+
+    /**
+     * Solve every puzzle read from {@code in} and write the results to {@code out}.
+     */
+    public void run(Reader in, Writer out) throws IOException {
+        final BufferedReader reader = new BufferedReader(in, BUFFER_SIZE);
+        run(out, pipeline -> {
+            String[] chunk = new String[chunkSize];
+            int n = 0;
+            for (String line; (line = reader.readLine()) != null && !pipeline.failed(); ) {
+                chunk[n++] = line;
+                if (n == chunkSize) {
+                    pipeline.submit(solving(chunk, n));
+                    chunk = new String[chunkSize];
+                    n = 0;
+                }
+            }
+            if (n > 0) {
+                pipeline.submit(solving(chunk, n));
+            }
+        });
+    }
+
+    /**
+     * Solve every puzzle of the memory-mapped file and write the results to {@code out}.
+     * The file is split into line-aligned chunks which the workers parse in place.
+     */
+    public void run(Path file, Writer out) throws IOException {
+        try (MappedPuzzleReader reader = new MappedPuzzleReader(file)) {
+            final List<MappedPuzzleReader.Chunk> chunks = reader.split((long) chunkSize * (LENGTH + 1));
+            run(out, pipeline -> {
+                for (int i = 0; i < chunks.size() && !pipeline.failed(); i++) {
+                    final MappedPuzzleReader.Chunk chunk = chunks.get(i);
+                    pipeline.submit(solving(chunk));
+                    // let the chunk and its mapping go once submitted
+                    chunks.set(i, null);
+                }
+            });
+        }
+    }
+
+    private void run(Writer out, OrderedPipeline.Feeding<String> feeding) throws IOException {
+        final ExecutorService workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int n;
+
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "sudoku-batch-" + n++);
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        try {
+            new OrderedPipeline<String>(workers, queueDepth, "sudoku-batch-writer").run(feeding, out::write);
+            out.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("batch interrupted");
+        } finally {
+            workers.shutdownNow();
+        }
+        Log.info("solved:", solved.get(), "failed:", failed.get());
+    }
+
+    private Callable<String> solving(final String[] lines, final int n) {
+        return () -> {
+            final PropagationSolver solver = Model.propagationSolver(3);
+            final int[] cells = new int[LENGTH];
+            final StringBuilder b = new StringBuilder(n * (LENGTH + 1));
+            for (int k = 0; k < n; k++) {
+                final String line = lines[k];
+                if (line.isEmpty() || line.charAt(0) == '#') {
+                    b.append(line.isEmpty() ? "#" : line);
+                } else if (!parse(line, cells)) {
+                    malformed(b).append(line);
+                } else if (!solve(solver, cells, b)) {
+                    b.append(line);
+                }
+                b.append('\n');
+            }
+            return b.toString();
+        };
+    }
+
+    private Callable<String> solving(final MappedPuzzleReader.Chunk chunk) {
+        return () -> {
+            final PropagationSolver solver = Model.propagationSolver(3);
+            final int[] cells = new int[LENGTH];
+            final StringBuilder b = new StringBuilder((int) (chunk.end - chunk.start));
+            for (int r; (r = chunk.next(cells)) != MappedPuzzleReader.Chunk.END; ) {
+                switch (r) {
+                    case MappedPuzzleReader.Chunk.PUZZLE:
+                        if (!solve(solver, cells, b)) {
+                            chunk.appendLine(b);
+                        }
+                        break;
+                    case MappedPuzzleReader.Chunk.MALFORMED:
+                        chunk.appendLine(malformed(b));
+                        break;
+                    default:
+                        // blank or comment line
+                        final int len = b.length();
+                        chunk.appendLine(b);
+                        if (b.length() == len) {
+                            b.append('#');
+                        }
+                }
+                b.append('\n');
+            }
+            return b.toString();
+        };
+    }
+
+    /**
+     * Append the solution, or the "no solution" prefix of the failure line and return false.
+     */
+    private boolean solve(PropagationSolver solver, int[] cells, StringBuilder out) {
+        final long start = System.nanoTime();
+        final boolean ok = solver.solve(cells);
+        SolverStats.get().solved(ok ? SolveStatus.SOLVED : SolveStatus.UNSOLVABLE, System.nanoTime() - start);
+        if (!ok) {
+            failed.incrementAndGet();
+            out.append("# no solution: ");
+            return false;
+        }
+        solved.incrementAndGet();
+        for (int cell : cells) {
+            out.append((char) ('0' + cell));
+        }
+        return true;
+    }
+
+    private StringBuilder malformed(StringBuilder out) {
+        failed.incrementAndGet();
+        return out.append("# malformed: ");
+    }
+
+    /**
+     * Parse the first 81 characters of the line; return false if malformed.
+     */
+    static boolean parse(CharSequence line, int[] cells) {
+        if (line.length() < LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < LENGTH; i++) {
+            final char ch = line.charAt(i);
+            if (ch == '.' || ch == '0') {
+                cells[i] = 0;
+            } else if (ch >= '1' && ch <= '9') {
+                cells[i] = ch - '0';
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static void main(String[] args) throws IOException {
+        final String input = args.length > 0 ? args[0] : STDIO;
+        final String output = args.length > 1 ? args[1] : STDIO;
+        final int threads = Integer.getInteger(KEY_BATCH_THREADS, Runtime.getRuntime().availableProcessors());
+        final int chunk = Integer.getInteger(KEY_BATCH_CHUNK, DEFAULT_BATCH_CHUNK);
+        final int queue = Integer.getInteger(KEY_BATCH_QUEUE, 2 * threads);
+
+        final boolean mmap = Boolean.parseBoolean(System.getProperty(KEY_BATCH_MMAP, "true"));
+        final Batch batch = new Batch(threads, chunk, queue);
+
+        final long t0 = System.nanoTime();
+        try (Writer out = new BufferedWriter(STDIO.equals(output) ?
+                new OutputStreamWriter(System.out, StandardCharsets.US_ASCII) :
+                new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.US_ASCII),
+                BUFFER_SIZE)) {
+            if (STDIO.equals(input)) {
+                batch.run(new InputStreamReader(System.in, StandardCharsets.US_ASCII), out);
+            } else if (mmap) {
+                batch.run(Paths.get(input), out);
+            } else {
+                try (Reader in = new InputStreamReader(new FileInputStream(input), StandardCharsets.US_ASCII)) {
+                    batch.run(in, out);
+                }
+            }
+        }
+        Log.info("elapsed ms:", (System.nanoTime() - t0) / 1_000_000);
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.cloudecho.sudoku;
+
+/**
+ * Cooperative cancellation of a solve.
+ * Solvers poll {@link #stop(long)} every few hundred search nodes.
+ */
+public class CancellationToken {
+    /**
+     * Deadline meaning "never", see {@link #stop(long)}.
+     */
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    /**
+     * A token nobody cancels.
+     */
+    static final CancellationToken NONE = new CancellationToken();
+
+    private final CancellationToken parent;
+    private volatile boolean cancelled;
+
+    public CancellationToken() {
+        this(null);
+    }
+
+    /**
+     * A token that is also cancelled once the parent is, e.g. to stop part of a search on its own.
+     */
+    CancellationToken(CancellationToken parent) {
+        this.parent = parent;
+    }
+
+    public void cancel() {
+        if (this == NONE) {
+            throw new UnsupportedOperationException("could not cancel NONE");
+        }
+        this.cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled || parent != null && parent.isCancelled();
+    }
+
+    /**
+     * Return true if the token is cancelled or the deadline, in {@link System#nanoTime()} terms, has passed.
+     */
+    boolean stop(long deadline) {
+        return isCancelled() || deadline != NO_DEADLINE && System.nanoTime() - deadline >= 0;
+    }
+}
@@ -0,0 +1,149 @@
+package com.github.cloudecho.sudoku;
+
+import java.util.Arrays;
+
+/**
+ * The candidates (pencil marks) of every cell, kept up to date as digits are placed and cleared.
+ * <p>
+ * Placing a digit removes it from the peers of the cell; clearing it gives it back to the peers
+ * that see no other copy of it, found through per-unit digit counts. Either way only the cell and its
+ * peers are touched. Candidates removed by a hint stay removed until some digit is cleared,
+ * as the reasoning behind them may have relied on it.
+ * Instances are not thread-safe, they are used on the event dispatch thread.
+ */
+class CandidateGrid {
+    final Layout layout;
+    final int size;
+    private final int all;
+
+    private final int[] digits;
+    private final int[] masks;
+    // digits removed from the candidates of each cell by hints
+    private final int[] removed;
+    private boolean anyRemoved;
+    // counts[unit * size + digit - 1], digits placed in each unit, duplicates included
+    private final byte[] counts;
+
+    CandidateGrid(int box) {
+        this.layout = Layout.of(box);
+        this.size = layout.size;
+        this.all = (1 << size) - 1;
+        this.digits = new int[layout.cells];
+        this.masks = new int[layout.cells];
+        this.removed = new int[layout.cells];
+        this.counts = new byte[layout.units.length * size];
+    }
+
+    /**
+     * Start over from the digits of the model, hidden cells being empty.
+     */
+    void load(Model model) {
+        load(model.toCells());
+    }
+
+    void load(int[] cells) {
+        Arrays.fill(digits, 0);
+        Arrays.fill(counts, (byte) 0);
+        Arrays.fill(removed, 0);
+        anyRemoved = false;
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i] != 0) {
+                digits[i] = cells[i];
+                count(i, cells[i], 1);
+            }
+        }
+        for (int i = 0; i < digits.length; i++) {
+            masks[i] = allowed(i);
+        }
+    }
+
+    /**
+     * Place a digit in the cell, or clear it with 0.
+     *
+     * @return true if the candidates of every cell were recomputed, not just those of the cell and its peers
+     */
+    boolean set(int i, int digit) {
+        final int old = digits[i];
+        if (old == digit) {
+            return false;
+        }
+        boolean all = false;
+        if (old != 0) {
+            digits[i] = 0;
+            count(i, old, -1);
+            if (anyRemoved) {
+                // the removals may have relied on the digit
+                Arrays.fill(removed, 0);
+                anyRemoved = false;
+                all = true;
+                for (int k = 0; k < digits.length; k++) {
+                    masks[k] = allowed(k);
+                }
+            } else {
+                final int bit = 1 << (old - 1);
+                for (int p : layout.peers[i]) {
+                    if (digits[p] == 0 && (allowed(p) & bit) != 0) {
+                        masks[p] |= bit;
+                    }
+                }
+            }
+        }
+        if (digit != 0) {
+            digits[i] = digit;
+            count(i, digit, 1);
+            final int bit = ~(1 << (digit - 1));
+            for (int p : layout.peers[i]) {
+                masks[p] &= bit;
+            }
+        }
+        masks[i] = allowed(i);
+        return all;
+    }
+
+    /**
+     * Remove candidates of an empty cell, e.g. as told by a hint.
+     */
+    void eliminate(int i, int mask) {
+        removed[i] |= mask;
+        masks[i] &= ~mask;
+        anyRemoved = true;
+    }
+
+    /**
+     * The candidates of the cell as a bit mask, bit {@code d - 1} for digit d; 0 for a filled cell.
+     */
+    int candidates(int i) {
+        return masks[i];
+    }
+
+    /**
+     * The digit of the cell, 0 if empty.
+     */
+    int digit(int i) {
+        return digits[i];
+    }
+
+    private void count(int i, int digit, int delta) {
+        final int d = digit - 1;
+        counts[layout.rowOf[i] * size + d] += delta;
+        counts[(size + layout.colOf[i]) * size + d] += delta;
+        counts[(2 * size + layout.boxOf[i]) * size + d] += delta;
+    }
+
+    private int allowed(int i) {
+        if (digits[i] != 0) {
+            return 0;
+        }
+        final int r = layout.rowOf[i] * size;
+        final int c = (size + layout.colOf[i]) * size;
+        final int b = (2 * size + layout.boxOf[i]) * size;
+        int mask = all & ~removed[i];
+        for (int m = mask; m != 0; m &= m - 1) {
+            final int d = Integer.numberOfTrailingZeros(m);
+            if (counts[r + d] > 0 || counts[c + d] > 0 || counts[b + d] > 0) {
+                mask &= ~(1 << d);
+            }
+        }
+        return mask;
+    }
+}
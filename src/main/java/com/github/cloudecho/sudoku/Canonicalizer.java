@@ -0,0 +1,410 @@
+package com.github.cloudecho.sudoku;
+
+import java.util.Arrays;
+
+/**
+ * Maps a puzzle to its minlex form: the lexicographically smallest puzzle, read in row-major order
+ * with {@code 0} for an empty cell, among all the puzzles equivalent to it under transposition,
+ * band and stack permutations, row permutations within bands, column permutations within stacks
+ * and relabelling of the digits.
+ * <p>
+ * The first row of the form is known upfront: a row whose givens can be pushed furthest to the right.
+ * Column arrangements are built one column at a time, as long as some row can still become that first row.
+ * For each complete arrangement the rows are chosen one at a time, keeping only the rows whose relabelled
+ * image is the smallest possible at that point and dropping the arrangement as soon as its prefix exceeds
+ * the best form found so far.
+ * The digits are relabelled in order of first appearance, so the relabelling follows from the rows.
+ * <p>
+ * The number of arrangements grows as {@code (box!)^(box+1)}, so only boards up to 9x9 are supported.
+ * Instances keep their working arrays and are not thread-safe.
+ */
+class Canonicalizer {
+    static final int MAX_BOX = 3;
+
+    final int box;
+    final int size;
+    final int cells;
+
+    private final int[][] source;
+    private final int[] cols;
+    private boolean transposed;
+    // identical lines of the (transposed) puzzle, arranged in one order only
+    private final boolean[][] sameRow;
+    private final boolean[][] sameCol;
+    // rows holding a given in each column, as a bit mask
+    private final int[] givenRows;
+
+    // column arrangement being built
+    private int topMask;
+    private final int[] stackAt;
+    private final boolean[] usedStack;
+    private final boolean[] usedCol;
+
+    // current search path
+    private final int[] rowAt;
+    private final int[] bandAt;
+    private final boolean[] usedRow;
+    private final boolean[] usedBand;
+    private final int[][] maps;
+    private final int[] nexts;
+    private int next;
+    // images of the candidate rows, per depth
+    private final long[][] images;
+
+    // best form found so far, one row per entry
+    private final long[] best;
+    private Form form;
+
+    Canonicalizer(int box) {
+        if (box < Model.MIN_BOX || box > MAX_BOX) {
+            throw new IllegalArgumentException("box size out of range: " + box);
+        }
+        this.box = box;
+        this.size = box * box;
+        this.cells = size * size;
+
+        this.source = new int[size][size];
+        this.cols = new int[size];
+        this.sameRow = new boolean[size][size];
+        this.sameCol = new boolean[size][size];
+        this.givenRows = new int[size];
+        this.stackAt = new int[box];
+        this.usedStack = new boolean[box];
+        this.usedCol = new boolean[size];
+        this.rowAt = new int[size];
+        this.bandAt = new int[box];
+        this.usedRow = new boolean[size];
+        this.usedBand = new boolean[box];
+        this.maps = new int[size + 1][size + 1];
+        this.nexts = new int[size + 1];
+        this.images = new long[size][size];
+        this.best = new long[size];
+    }
+
+    /**
+     * The minlex form of a puzzle and the transformation leading to it.
+     */
+    static final class Form {
+        final int size;
+        /**
+         * The minlex puzzle, in row-major order.
+         */
+        final int[] cells;
+        /**
+         * Whether the puzzle is transposed first.
+         */
+        final boolean transposed;
+        /**
+         * Row {@code i} of the form is row {@code rows[i]} of the (transposed) puzzle.
+         */
+        final int[] rows;
+        /**
+         * Column {@code k} of the form is column {@code cols[k]} of the (transposed) puzzle.
+         */
+        final int[] cols;
+        /**
+         * Digit {@code d} of the puzzle is {@code digits[d]} in the form, {@code digits[0] == 0}.
+         */
+        final int[] digits;
+
+        private Form(int size, int[] cells, boolean transposed, int[] rows, int[] cols, int[] digits) {
+            this.size = size;
+            this.cells = cells;
+            this.transposed = transposed;
+            this.rows = rows;
+            this.cols = cols;
+            this.digits = digits;
+        }
+
+        /**
+         * Apply the transformation to another grid of the same puzzle, e.g. its solution.
+         */
+        int[] toCanonical(int[] grid) {
+            final int[] out = new int[grid.length];
+            for (int i = 0; i < size; i++) {
+                for (int k = 0; k < size; k++) {
+                    out[i * size + k] = digits[grid[sourceIndex(rows[i], cols[k])]];
+                }
+            }
+            return out;
+        }
+
+        /**
+         * Undo the transformation, e.g. to map the solution of the form back to the puzzle.
+         */
+        int[] fromCanonical(int[] grid) {
+            final int[] inverse = new int[digits.length];
+            for (int d = 0; d < digits.length; d++) {
+                inverse[digits[d]] = d;
+            }
+            final int[] out = new int[grid.length];
+            for (int i = 0; i < size; i++) {
+                for (int k = 0; k < size; k++) {
+                    out[sourceIndex(rows[i], cols[k])] = inverse[grid[i * size + k]];
+                }
+            }
+            return out;
+        }
+
+        private int sourceIndex(int r, int c) {
+            return transposed ? c * size + r : r * size + c;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Form && Arrays.equals(cells, ((Form) o).cells);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(cells);
+        }
+    }
+
+    Form canonicalize(Model model) {
+        return canonicalize(model.toCells());
+    }
+
+    /**
+     * Return the minlex form of the puzzle, cells in row-major order, {@code 0} for an empty cell.
+     */
+    Form canonicalize(int[] puzzle) {
+        if (puzzle.length != cells) {
+            throw new IllegalArgumentException("expected " + cells + " cells, got " + puzzle.length);
+        }
+        Arrays.fill(best, Long.MAX_VALUE);
+        form = null;
+
+        // the first row of the form has its givens as far right as possible
+        topMask = Integer.MAX_VALUE;
+        for (int t = 0; t < 2; t++) {
+            for (int r = 0; r < size; r++) {
+                topMask = Math.min(topMask, lowestMask(puzzle, t == 1, r));
+            }
+        }
+
+        for (int t = 0; t < 2; t++) {
+            transposed = t == 1;
+            for (int r = 0; r < size; r++) {
+                for (int c = 0; c < size; c++) {
+                    source[r][c] = transposed ? puzzle[c * size + r] : puzzle[r * size + c];
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                givenRows[i] = 0;
+                for (int j = 0; j < size; j++) {
+                    boolean rowsEqual = true;
+                    boolean colsEqual = true;
+                    for (int k = 0; k < size; k++) {
+                        rowsEqual &= source[i][k] == source[j][k];
+                        colsEqual &= source[k][i] == source[k][j];
+                    }
+                    sameRow[i][j] = rowsEqual;
+                    sameCol[i][j] = colsEqual;
+                    if (source[j][i] != 0) {
+                        givenRows[i] |= 1 << j;
+                    }
+                }
+            }
+            arrange(0, (1 << size) - 1);
+        }
+        return form;
+    }
+
+    /**
+     * Return the givens of the row as a bit mask, first column in the highest bit,
+     * with the stacks and the columns within them arranged to make it smallest.
+     */
+    private int lowestMask(int[] puzzle, boolean transposed, int r) {
+        final int[] counts = new int[box];
+        for (int c = 0; c < size; c++) {
+            if ((transposed ? puzzle[c * size + r] : puzzle[r * size + c]) != 0) {
+                counts[c / box]++;
+            }
+        }
+        Arrays.sort(counts);
+        int mask = 0;
+        for (int n : counts) {
+            mask = mask << box | (1 << n) - 1;
+        }
+        return mask;
+    }
+
+    /**
+     * Choose the column placed at {@code k}. Only arrangements where some row, among {@code rows},
+     * can still give the first row of the form are followed; of identical columns or stacks,
+     * only one order is tried.
+     */
+    private void arrange(int k, int rows) {
+        if (k == size) {
+            search(0);
+            return;
+        }
+        final int s = k / box;
+        if (k % box == 0) {
+            for (int st = 0; st < box; st++) {
+                if (usedStack[st] || identicalUnusedStackBefore(st)) {
+                    continue;
+                }
+                usedStack[st] = true;
+                stackAt[s] = st;
+                arrangeWithin(k, rows);
+                usedStack[st] = false;
+            }
+        } else {
+            arrangeWithin(k, rows);
+        }
+    }
+
+    private void arrangeWithin(int k, int rows) {
+        final boolean given = (topMask >>> (size - 1 - k) & 1) != 0;
+        final int first = stackAt[k / box] * box;
+        for (int c = first; c < first + box; c++) {
+            if (usedCol[c] || identicalUnusedColumnBefore(c, first)) {
+                continue;
+            }
+            final int alive = rows & (given ? givenRows[c] : ~givenRows[c]);
+            if (alive == 0) {
+                continue;
+            }
+            usedCol[c] = true;
+            cols[k] = c;
+            arrange(k + 1, alive);
+            usedCol[c] = false;
+        }
+    }
+
+    private boolean identicalUnusedColumnBefore(int c, int first) {
+        for (int c2 = first; c2 < c; c2++) {
+            if (!usedCol[c2] && sameCol[c2][c]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean identicalUnusedStackBefore(int st) {
+        for (int st2 = 0; st2 < st; st2++) {
+            if (usedStack[st2]) {
+                continue;
+            }
+            boolean same = true;
+            for (int j = 0; j < box; j++) {
+                same &= sameCol[st2 * box + j][st * box + j];
+            }
+            if (same) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Choose the row placed at {@code depth}, the rows above matching the best form.
+     */
+    private void search(int depth) {
+        if (depth == size) {
+            record();
+            return;
+        }
+        if (depth == 0) {
+            Arrays.fill(maps[0], 0);
+            nexts[0] = 1;
+        }
+
+        final int band = depth / box;
+        final boolean first = depth % box == 0;
+        final long[] image = images[depth];
+
+        // the smallest image among the candidate rows
+        long min = Long.MAX_VALUE;
+        for (int r = 0; r < size; r++) {
+            if (candidate(r, band, first)) {
+                image[r] = image(source[r], maps[depth], nexts[depth], maps[depth + 1]);
+                min = Math.min(min, image[r]);
+            }
+        }
+        if (min > best[depth]) {
+            return;
+        }
+        if (min < best[depth]) {
+            best[depth] = min;
+            Arrays.fill(best, depth + 1, size, Long.MAX_VALUE);
+        }
+
+        for (int r = 0; r < size; r++) {
+            if (!candidate(r, band, first) || image[r] != min) {
+                continue;
+            }
+            image(source[r], maps[depth], nexts[depth], maps[depth + 1]);
+            nexts[depth + 1] = next;
+
+            rowAt[depth] = r;
+            usedRow[r] = true;
+            if (first) {
+                bandAt[band] = r / box;
+                usedBand[r / box] = true;
+            }
+            search(depth + 1);
+            usedRow[r] = false;
+            if (first) {
+                usedBand[r / box] = false;
+            }
+        }
+    }
+
+    private boolean candidate(int r, int band, boolean first) {
+        if (usedRow[r] || (first ? usedBand[r / box] : r / box != bandAt[band])) {
+            return false;
+        }
+        // of identical unused rows within a band, only the first one
+        for (int r2 = r / box * box; r2 < r; r2++) {
+            if (!usedRow[r2] && sameRow[r2][r]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the row, its columns arranged by {@link #cols}, relabelled with the map into {@code mapOut}, digits not in the map
+     * taking the labels from {@code next} on; the label after the last one is left in {@link #next}.
+     */
+    private long image(int[] row, int[] map, int next, int[] mapOut) {
+        System.arraycopy(map, 0, mapOut, 0, size + 1);
+        long image = 0;
+        for (int k = 0; k < size; k++) {
+            final int d = row[cols[k]];
+            int v = 0;
+            if (d != 0) {
+                v = mapOut[d];
+                if (v == 0) {
+                    v = mapOut[d] = next++;
+                }
+            }
+            image = image << 4 | v;
+        }
+        this.next = next;
+        return image;
+    }
+
+    private void record() {
+        final int[] digits = new int[size + 1];
+        System.arraycopy(maps[size], 0, digits, 0, size + 1);
+        // digits absent from the puzzle take the remaining labels in order
+        int next = nexts[size];
+        for (int d = 1; d <= size; d++) {
+            if (digits[d] == 0) {
+                digits[d] = next++;
+            }
+        }
+
+        final int[] canonical = new int[cells];
+        for (int i = 0; i < size; i++) {
+            for (int k = 0; k < size; k++) {
+                canonical[i * size + k] = digits[source[rowAt[i]][cols[k]]];
+            }
+        }
+        form = new Form(size, canonical, transposed, rowAt.clone(), cols.clone(), digits);
+    }
+}
@@ -0,0 +1,19 @@
+package com.github.cloudecho.sudoku;
+
+/**
+ * A solving engine working on cells in row-major order, {@code 0} for an empty cell.
+ */
+interface CellSolver {
+    /**
+     * Solve the puzzle in place, giving up once the token says stop.
+     *
+     * @return false if the puzzle has no solution or the search was given up, see {@link #aborted()};
+     * the cells are then left untouched
+     */
+    boolean solve(int[] puzzle, CancellationToken token, long deadline);
+
+    /**
+     * Return true if the last solve was given up before finishing.
+     */
+    boolean aborted();
+}
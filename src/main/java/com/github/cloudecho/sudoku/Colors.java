@@ -6,6 +6,8 @@ public class Colors {
     public static final Color BG_COLOR = new Color(0xe7, 0xe7, 0xe7);
     public static final Color BORDER_COLOR = Color.LIGHT_GRAY;
     public static final Color SELECTED_COLOR = new Color(192, 190, 91, 128);
+    public static final Color HINT_COLOR = new Color(120, 190, 120, 128);
+    public static final Color MARK_TEXT_COLOR = Color.GRAY;
 
     public static final Color DEFAULT_TEXT_COLOR = Color.DARK_GRAY;
     public static final Color INPUT_TEXT_COLOR = new Color(82, 173, 173);
@@ -33,7 +35,9 @@ public class Colors {
         return -1; // not found
     }
 
-    private static final int DIGIT_BITS = 4;
+    // enough for the digits of a 25x25 board
+    private static final int DIGIT_BITS = 5;
+    private static final int DIGIT_MASK = (1 << DIGIT_BITS) - 1;
 
     static byte withColor(byte digit, byte colorId) {
         return (byte) (colorId << DIGIT_BITS | digit);
@@ -52,7 +56,14 @@ public class Colors {
             return digitWithColor;
         }
 
-        return (byte) (0x0f & digitWithColor);
+        return (byte) (DIGIT_MASK & digitWithColor);
+    }
+
+    /**
+     * Return true for a digit entered by the player, in the input or error color.
+     */
+    static boolean isInput(byte digitWithColor) {
+        return indexOf(digitWithColor) > 0;
     }
 
     static Color ofDigit(byte digitWithColor) {
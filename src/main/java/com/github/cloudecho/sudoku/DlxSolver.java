@@ -0,0 +1,304 @@
+package com.github.cloudecho.sudoku;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dancing Links (Algorithm X) exact-cover solver.
+ * <p>
+ * The cell, row, column and box constraints are encoded once into primitive
+ * node arrays when the instance is created. Each solve covers the givens,
+ * searches, and uncovers them again, which restores the links exactly,
+ * so the same arrays are reused from one solve to the next.
+ * Instances are not thread-safe.
+ * <p>
+ * Cells are passed as {@code int[]} in row-major order, {@code 0} for an empty cell,
+ * otherwise a digit in {@code 1..size}.
+ */
+class DlxSolver implements CellSolver {
+    private static final int ROOT = 0;
+    // poll the cancellation token every 1024 nodes
+    private static final int STOP_CHECK_MASK = 1023;
+
+    final int box;
+    final int size;
+    final int cells;
+
+    // node links, index 0 is the root, 1..columns are the column headers
+    private final int[] left;
+    private final int[] right;
+    private final int[] up;
+    private final int[] down;
+    private final int[] column;
+    private final int[] choice;
+    // per column header
+    private final int[] count;
+    private final boolean[] covered;
+    // first node of each choice (cell * size + digit - 1)
+    private final int[] choiceNode;
+
+    private final int[] stack;
+    private final int[] givens;
+    private int depth;
+
+    private int[] puzzle;
+    private int[] solution;
+    private List<int[]> solutions;
+    private int found;
+    private int limit;
+
+    private CancellationToken token = CancellationToken.NONE;
+    private long deadline = CancellationToken.NO_DEADLINE;
+    private boolean aborted;
+
+    // counted per run, then added to the SolverStats
+    private long nodes;
+    private long backtracks;
+
+    DlxSolver(int box) {
+        this.box = box;
+        this.size = box * box;
+        this.cells = size * size;
+
+        final int columns = 4 * cells;
+        final int choices = cells * size;
+        final int nodes = 1 + columns + 4 * choices;
+
+        this.left = new int[nodes];
+        this.right = new int[nodes];
+        this.up = new int[nodes];
+        this.down = new int[nodes];
+        this.column = new int[nodes];
+        this.choice = new int[nodes];
+        this.count = new int[1 + columns];
+        this.covered = new boolean[1 + columns];
+        this.choiceNode = new int[choices];
+        this.stack = new int[cells];
+        this.givens = new int[cells];
+
+        for (int h = 0; h <= columns; h++) {
+            left[h] = h == 0 ? columns : h - 1;
+            right[h] = h == columns ? 0 : h + 1;
+            up[h] = h;
+            down[h] = h;
+            column[h] = h;
+        }
+
+        final Layout layout = Layout.of(box);
+        int node = columns + 1;
+        for (int cell = 0; cell < cells; cell++) {
+            final int r = layout.rowOf[cell];
+            final int c = layout.colOf[cell];
+            final int b = layout.boxOf[cell];
+            for (int d = 0; d < size; d++) {
+                final int ch = cell * size + d;
+                choiceNode[ch] = node;
+                link(node, 1 + cell, ch);
+                link(node + 1, 1 + cells + r * size + d, ch);
+                link(node + 2, 1 + 2 * cells + c * size + d, ch);
+                link(node + 3, 1 + 3 * cells + b * size + d, ch);
+                for (int k = 0; k < 4; k++) {
+                    left[node + k] = node + (k + 3) % 4;
+                    right[node + k] = node + (k + 1) % 4;
+                }
+                node += 4;
+            }
+        }
+    }
+
+    private void link(int node, int header, int ch) {
+        column[node] = header;
+        choice[node] = ch;
+        up[node] = up[header];
+        down[node] = header;
+        down[up[header]] = node;
+        up[header] = node;
+        count[header]++;
+    }
+
+    /**
+     * Solve the puzzle in place.
+     *
+     * @return false if the puzzle has no solution, the cells are then left untouched
+     */
+    boolean solve(int[] puzzle) {
+        return solve(puzzle, CancellationToken.NONE, CancellationToken.NO_DEADLINE);
+    }
+
+    @Override
+    public boolean solve(int[] puzzle, CancellationToken token, long deadline) {
+        this.token = token;
+        this.deadline = deadline;
+        try {
+            run(puzzle, puzzle, null, 1);
+        } finally {
+            this.token = CancellationToken.NONE;
+            this.deadline = CancellationToken.NO_DEADLINE;
+        }
+        return found > 0;
+    }
+
+    @Override
+    public boolean aborted() {
+        return aborted;
+    }
+
+    /**
+     * Count the solutions of the puzzle, stopping as soon as {@code limit} solutions are found.
+     * The cells are left untouched.
+     */
+    int countSolutions(int[] puzzle, int limit) {
+        run(puzzle, null, null, limit);
+        return found;
+    }
+
+    /**
+     * Return up to {@code limit} solutions of the puzzle; every solution with {@link Integer#MAX_VALUE}.
+     */
+    List<int[]> solutions(int[] puzzle, int limit) {
+        final List<int[]> list = new ArrayList<>();
+        run(puzzle, null, list, limit);
+        return list;
+    }
+
+    private void run(int[] puzzle, int[] solution, List<int[]> solutions, int limit) {
+        this.puzzle = puzzle;
+        this.solution = solution;
+        this.solutions = solutions;
+        this.found = 0;
+        this.limit = limit;
+        this.nodes = 0;
+        this.backtracks = 0;
+        this.aborted = false;
+
+        final int n = coverGivens(puzzle);
+        if (n >= 0) {
+            this.depth = 0;
+            search();
+        }
+        uncoverGivens(n >= 0 ? n : -n - 1);
+        SolverStats.get().search(nodes, backtracks, 0);
+
+        this.puzzle = null;
+        this.solution = null;
+        this.solutions = null;
+    }
+
+    /**
+     * Return the number of givens covered, or {@code -(covered + 1)} on conflicting givens.
+     */
+    private int coverGivens(int[] puzzle) {
+        int n = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            final int d = puzzle[cell];
+            if (d == 0) {
+                continue;
+            }
+            final int node = choiceNode[cell * size + d - 1];
+            for (int k = 0; k < 4; k++) {
+                if (covered[column[node + k]]) {
+                    return -(n + 1);
+                }
+            }
+            for (int k = 0; k < 4; k++) {
+                cover(column[node + k]);
+            }
+            givens[n++] = node;
+        }
+        return n;
+    }
+
+    private void uncoverGivens(int n) {
+        while (n > 0) {
+            final int node = givens[--n];
+            for (int k = 3; k >= 0; k--) {
+                uncover(column[node + k]);
+            }
+        }
+    }
+
+    /**
+     * Return true if the search should stop.
+     */
+    private boolean search() {
+        if ((++nodes & STOP_CHECK_MASK) == 0 && token.stop(deadline)) {
+            aborted = true;
+            return true;
+        }
+        if (right[ROOT] == ROOT) {
+            // find an answer
+            found++;
+            if (solution != null) {
+                fill(solution);
+            }
+            if (solutions != null) {
+                solutions.add(fill(puzzle.clone()));
+            }
+            return found >= limit;
+        }
+
+        // column with the fewest choices
+        int col = right[ROOT];
+        for (int h = right[col]; h != ROOT; h = right[h]) {
+            if (count[h] < count[col]) {
+                col = h;
+            }
+        }
+        if (count[col] == 0) {
+            return false;
+        }
+
+        cover(col);
+        boolean stop = false;
+        for (int r = down[col]; r != col && !stop; r = down[r]) {
+            stack[depth++] = r;
+            for (int j = right[r]; j != r; j = right[j]) {
+                cover(column[j]);
+            }
+            stop = search();
+            for (int j = left[r]; j != r; j = left[j]) {
+                uncover(column[j]);
+            }
+            depth--;
+            if (!stop) {
+                backtracks++;
+            }
+        }
+        uncover(col);
+        return stop;
+    }
+
+    private int[] fill(int[] dest) {
+        for (int i = 0; i < depth; i++) {
+            final int ch = choice[stack[i]];
+            dest[ch / size] = ch % size + 1;
+        }
+        return dest;
+    }
+
+    private void cover(int col) {
+        covered[col] = true;
+        right[left[col]] = right[col];
+        left[right[col]] = left[col];
+        for (int i = down[col]; i != col; i = down[i]) {
+            for (int j = right[i]; j != i; j = right[j]) {
+                up[down[j]] = up[j];
+                down[up[j]] = down[j];
+                count[column[j]]--;
+            }
+        }
+    }
+
+    private void uncover(int col) {
+        for (int i = up[col]; i != col; i = up[i]) {
+            for (int j = left[i]; j != i; j = left[j]) {
+                count[column[j]]++;
+                up[down[j]] = j;
+                down[up[j]] = j;
+            }
+        }
+        right[left[col]] = col;
+        left[right[col]] = col;
+        covered[col] = false;
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.cloudecho.sudoku;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Headless bulk generator of graded puzzles.
+ * <p>
+ * Writes {@code count} puzzles of the level, one line each: the cells in row-major order, {@code .} for
+ * an empty cell, then a space and the {@link Grader} grade. The lines can be fed back to {@link Batch},
+ * which ignores anything after the 81st character. Puzzles are generated by {@code GENERATE_THREADS}
+ * threads (one per processor by default) through an {@link OrderedPipeline}; the first failure stops
+ * the generation and ends the command with that error.
+ *
+ * <pre>
+ * java -cp sudoku.jar com.github.cloudecho.sudoku.Generator [easy|normal|hard] [count] [output|-]
+ * </pre>
+ */
+public class Generator {
+    static final String KEY_GENERATE_THREADS = "GENERATE_THREADS";
+
+    private static final String STDIO = "-";
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final float level = levelOf(args.length > 0 ? args[0] : "normal");
+        final int count = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        final String output = args.length > 2 ? args[2] : STDIO;
+        final int box = Integer.getInteger(Sudoku.KEY_BOX_SIZE, Sudoku.DEFAULT_BOX_SIZE);
+        final int attempts = Integer.getInteger(PuzzlePool.KEY_PUZZLE_ATTEMPTS, PuzzlePool.DEFAULT_PUZZLE_ATTEMPTS);
+        final int threads = Integer.getInteger(KEY_GENERATE_THREADS, Runtime.getRuntime().availableProcessors());
+
+        final ExecutorService workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "sudoku-generator");
+            t.setDaemon(true);
+            return t;
+        });
+
+        final long t0 = System.nanoTime();
+        try (Writer out = new BufferedWriter(STDIO.equals(output) ?
+                new OutputStreamWriter(System.out, StandardCharsets.US_ASCII) :
+                new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.US_ASCII))) {
+            // the first failure of a worker or of the output stops the feeding and is rethrown here
+            new OrderedPipeline<String>(workers, 2 * threads, "sudoku-generator-writer").run(pipeline -> {
+                for (int n = 0; n < count && !pipeline.failed(); n++) {
+                    pipeline.submit(() -> {
+                        final int[] cells = PuzzlePool.generate(box, level, attempts).toCells();
+                        return line(cells) + ' ' + Model.grader(box).grade(cells) + '\n';
+                    });
+                }
+            }, out::write);
+        } finally {
+            workers.shutdownNow();
+        }
+        Log.info("elapsed ms:", (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    private static float levelOf(String level) {
+        if ("easy".equalsIgnoreCase(level)) {
+            return Sudoku.EASY;
+        } else if ("normal".equalsIgnoreCase(level)) {
+            return Sudoku.NORMAL;
+        } else if ("hard".equalsIgnoreCase(level)) {
+            return Sudoku.HARD;
+        }
+        throw new IllegalArgumentException("unknown level " + level);
+    }
+
+    private static String line(int[] cells) {
+        final StringBuilder b = new StringBuilder(cells.length);
+        for (int n : cells) {
+            b.append(n == 0 ? "." : Model.symbol(n));
+        }
+        return b.toString();
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.cloudecho.sudoku;
+
+/**
+ * Rates a puzzle by the hardest {@link Technique} a player needs and the number of steps,
+ * replaying the {@link HintEngine} until the board is full or no step is found.
+ * <p>
+ * Grading a 9x9 puzzle takes a few dozen steps of a few microseconds each, so thousands of
+ * candidate puzzles can be graded per second on one core.
+ * Instances are not thread-safe, see {@link Model#grader(int)}.
+ */
+class Grader {
+    /**
+     * Difficulties, solved with singles only, with locked candidates or pairs, and with x-wings or beyond.
+     */
+    static final int EASY = 0;
+    static final int NORMAL = 1;
+    static final int HARD = 2;
+
+    private final HintEngine engine;
+
+    Grader(int box) {
+        this.engine = new HintEngine(box);
+    }
+
+    /**
+     * Grade a puzzle, cells in row-major order, 0 for an empty cell.
+     */
+    Grade grade(int[] puzzle) {
+        engine.load(puzzle);
+        Technique hardest = null;
+        int steps = 0;
+        while (!engine.solved()) {
+            final Hint hint = engine.step();
+            if (hint == null) {
+                return new Grade(hardest, steps, false);
+            }
+            engine.apply(hint);
+            steps++;
+            if (hardest == null || hint.technique.compareTo(hardest) > 0) {
+                hardest = hint.technique;
+            }
+        }
+        return new Grade(hardest, steps, true);
+    }
+
+    /**
+     * The difficulty aimed at for a level of {@link Sudoku}.
+     */
+    static int difficultyOf(float level) {
+        return level <= Sudoku.EASY ? EASY : level <= Sudoku.NORMAL ? NORMAL : HARD;
+    }
+
+    static final class Grade implements Comparable<Grade> {
+        /**
+         * The hardest technique used, null if no step was needed.
+         */
+        final Technique hardest;
+        final int steps;
+        /**
+         * False if the techniques got stuck before the board was full, the puzzle needs guessing.
+         */
+        final boolean solved;
+
+        Grade(Technique hardest, int steps, boolean solved) {
+            this.hardest = hardest;
+            this.steps = steps;
+            this.solved = solved;
+        }
+
+        int difficulty() {
+            if (!solved) {
+                return HARD;
+            }
+            if (hardest == null || hardest.compareTo(Technique.HIDDEN_SINGLE) <= 0) {
+                return EASY;
+            }
+            return hardest.compareTo(Technique.HIDDEN_PAIR) <= 0 ? NORMAL : HARD;
+        }
+
+        /**
+         * Unsolved puzzles rank above any solved one, then by the hardest technique, then by steps.
+         */
+        @Override
+        public int compareTo(Grade o) {
+            if (solved != o.solved) {
+                return solved ? -1 : 1;
+            }
+            final int h = Integer.compare(rank(hardest), rank(o.hardest));
+            return h != 0 ? h : Integer.compare(steps, o.steps);
+        }
+
+        private static int rank(Technique t) {
+            return t == null ? -1 : t.ordinal();
+        }
+
+        @Override
+        public String toString() {
+            return (solved ? hardest == null ? "given" : hardest.label : "beyond techniques")
+                    + ", " + steps + " steps";
+        }
+    }
+}
@@ -13,10 +13,14 @@ class Gui extends JFrame {
 
     private MPanel matrix;
     private JComponent main;
+    private int box;
 
     private final JButton btnPuzzle = new JButton(LABEL_PUZZLE);
     private final JButton btnRestart = new JButton(LABEL_RESTART);
     private final JButton btnReset = new JButton(LABEL_RESET);
+    private final JButton btnHint = new JButton(LABEL_HINT);
+    private final JButton btnMarks = new JButton(LABEL_MARKS);
+    private final JLabel hintLabel = new JLabel(" ");
     private final ButtonGroup buttonGroupLevel = new ButtonGroup();
 
     public Gui(Sudoku sudoku) {
@@ -29,6 +33,7 @@ class Gui extends JFrame {
     private void init(Sudoku sudoku) {
         this.setTitle("Sudoku : github.com/cloudecho/sudoku");
         this.matrix = new MPanel(sudoku.model.row, sudoku.model.col);
+        this.box = sudoku.model.box();
 
         JRadioButton btnEasy = new JRadioButton("EASY");
         JRadioButton btnNormal = new JRadioButton("NORMAL");
@@ -49,6 +54,9 @@ class Gui extends JFrame {
         btnPuzzle.setFont(FONT2);
         btnReset.setFont(FONT2);
         btnRestart.setFont(FONT2);
+        btnHint.setFont(FONT2);
+        btnMarks.setFont(FONT2);
+        hintLabel.setFont(FONT2.deriveFont(FONT2.getSize2D() * 2 / 3));
 
         main = new JPanel();
         main.setLayout(new BorderLayout());
@@ -63,30 +71,65 @@ class Gui extends JFrame {
         north.add(btnReset);
         north.add(btnRestart);
 
+        Box south = Box.createHorizontalBox();
+        south.add(btnHint);
+        south.add(btnMarks);
+        south.add(Box.createHorizontalStrut(UNIT_SIZE / 4));
+        south.add(hintLabel);
+        south.add(Box.createHorizontalGlue());
+
         main.add(north, BorderLayout.NORTH);
         main.add(matrix, BorderLayout.CENTER);
+        main.add(south, BorderLayout.SOUTH);
     }
 
-    private void paint(Graphics g, Model model, Point currGrid) {
-        paintBorder(g);
-        selectGrid(g, currGrid.y, currGrid.x);
+    private void paint(Graphics g, Sudoku sudoku) {
+        final Model model = sudoku.model;
+        final Hint hint = sudoku.hint;
+        if (hint != null) {
+            if (hint.cell >= 0) {
+                matrix.paint(g, hint.cell / model.col, hint.cell % model.col, Colors.HINT_COLOR);
+            }
+            for (int i : hint.cells) {
+                matrix.paint(g, i / model.col, i % model.col, Colors.HINT_COLOR);
+            }
+        }
+        selectGrid(g, sudoku.currGrid.y, sudoku.currGrid.x);
 
-        for (int i = 0; i < matrix.row; ++i) {
-            for (int j = 0; j < matrix.col; ++j) {
+        final Rectangle cells = matrix.cellsIn(g.getClipBounds());
+        for (int i = cells.y; i < cells.y + cells.height; ++i) {
+            for (int j = cells.x; j < cells.x + cells.width; ++j) {
                 byte n = model.get(i, j);
                 if (n > 0) {
                     matrix.setText(g, i, j,
-                            String.valueOf(Colors.originalDigit(n)),
+                            Model.symbol(Colors.originalDigit(n)),
                             Colors.ofDigit(n));
+                } else if (sudoku.marks) {
+                    matrix.setMarks(g, i, j, sudoku.candidates.candidates(i * model.col + j),
+                            Colors.MARK_TEXT_COLOR);
                 }
             }
         }
     }
 
+    /**
+     * Show the text of a hint, or nothing with null.
+     */
+    void showHint(String text) {
+        hintLabel.setText(text == null ? " " : text);
+    }
+
     void repaintGui() {
         matrix.repaint();
     }
 
+    /**
+     * Repaint a single cell, e.g. after its digit changed or the selection moved in or out.
+     */
+    void repaintCell(int r, int c) {
+        matrix.repaintCell(r, c);
+    }
+
     private void selectGrid(Graphics g, int r, int c) {
         matrix.paint(g, r, c, Colors.SELECTED_COLOR);
     }
@@ -101,9 +144,10 @@ class Gui extends JFrame {
         g.setColor(Colors.BORDER_COLOR);
 
         // for each subgrid
-        for (int i = 0; i < matrix.row / 3; i++) {
-            for (int j = 0; j < matrix.col / 3; j++) {
-                g.drawRect(3 * j * Gui.UNIT_SIZE, 3 * i * Gui.UNIT_SIZE, 3 * Gui.UNIT_SIZE, 3 * Gui.UNIT_SIZE);
+        final int side = box * matrix.unit;
+        for (int i = 0; i < matrix.row / box; i++) {
+            for (int j = 0; j < matrix.col / box; j++) {
+                g.drawRect(j * side, i * side, side, side);
             }
         }
     }
@@ -124,6 +168,8 @@ class Gui extends JFrame {
     private static final String LABEL_SOLVED = "SOLVED";
     private static final String LABEL_RESET = "RESET";
     private static final String LABEL_RESTART = "RESTART";
+    private static final String LABEL_HINT = "HINT";
+    private static final String LABEL_MARKS = "MARKS";
 
     private void addListeners(final Sudoku sudoku) {
         this.btnPuzzle.addActionListener((actionEvent) -> {
@@ -147,59 +193,29 @@ class Gui extends JFrame {
         });
 
         this.btnRestart.addActionListener((actionEvent) -> sudoku.restart());
+        this.btnHint.addActionListener((actionEvent) -> sudoku.hint());
+        this.btnMarks.addActionListener((actionEvent) -> sudoku.toggleMarks());
 
-        this.matrix.addComponentPaintListener((g) -> paint(g, sudoku.model, sudoku.currGrid));
+        this.matrix.setOverlay(this::paintBorder);
+        this.matrix.addComponentPaintListener((g) -> paint(g, sudoku));
 
         this.main.addKeyListener(new KeyAdapter() {
             public void keyPressed(KeyEvent keyEvent) {
                 int keyCode = keyEvent.getKeyCode();
-                switch (keyCode) {
-                    case 37:
-                    case 65:
-                    case 226:
-                        sudoku.gridMove(Moving.LEFT);
-                        break;
-                    case 38:
-                    case 87:
-                    case 224:
-                        sudoku.gridMove(Moving.UP);
-                        break;
-                    case 39:
-                    case 68:
-                    case 227:
-                        sudoku.gridMove(Moving.RIGHT);
-                        break;
-                    case 40:
-                    case 83:
-                    case 225:
-                        sudoku.gridMove(Moving.DOWN);
-                        break;
-                    case '1':
-                    case '1' + 48:
-                    case '2':
-                    case '2' + 48:
-                    case '3':
-                    case '3' + 48:
-                    case '4':
-                    case '4' + 48:
-                    case '5':
-                    case '5' + 48:
-                    case '6':
-                    case '6' + 48:
-                    case '7':
-                    case '7' + 48:
-                    case '8':
-                    case '8' + 48:
-                    case '9':
-                    case '9' + 48:
-                        sudoku.inputDigit(keyCode);
-                        break;
-                    case 8:
-                    case 127:
-                        sudoku.clearDigit();
-                        break;
-                    default:
-                        Log.warn("keyCode=" + keyCode);
+                // letters are digits on large boards, but W, A, S and D keep moving unless typed with Shift
+                if (keyEvent.isShiftDown() && sudoku.digitOf(keyCode) > 0) {
+                    sudoku.inputDigit(keyCode);
+                    return;
+                }
+                int direction = directionOf(keyCode);
+                if (direction >= 0) {
+                    sudoku.gridMove(direction);
+                } else if (sudoku.digitOf(keyCode) > 0) {
+                    sudoku.inputDigit(keyCode);
+                } else if (keyCode == 8 || keyCode == 127) {
+                    sudoku.clearDigit();
+                } else {
+                    Log.warn("keyCode", keyCode);
                 }
             }
         });
@@ -207,6 +223,32 @@ class Gui extends JFrame {
         new Thread(new FocusRequesting(main)).start();
     }
 
+    /**
+     * The {@link Moving} direction of the arrow, keypad arrow or WASD key, -1 for another key.
+     */
+    private static int directionOf(int keyCode) {
+        switch (keyCode) {
+            case 37:
+            case 65:
+            case 226:
+                return Moving.LEFT;
+            case 38:
+            case 87:
+            case 224:
+                return Moving.UP;
+            case 39:
+            case 68:
+            case 227:
+                return Moving.RIGHT;
+            case 40:
+            case 83:
+            case 225:
+                return Moving.DOWN;
+            default:
+                return -1;
+        }
+    }
+
     private static class FocusRequesting implements Runnable {
         JComponent component;
 
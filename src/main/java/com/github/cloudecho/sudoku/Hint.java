@@ -0,0 +1,74 @@
+package com.github.cloudecho.sudoku;
+
+/**
+ * One logical step found by the {@link HintEngine}: a digit to place, or candidates to remove.
+ */
+final class Hint {
+    final Technique technique;
+    /**
+     * The cell to fill, -1 for a step that only removes candidates.
+     */
+    final int cell;
+    final int digit;
+    /**
+     * The unit the step was found in, as in {@link Layout#units}, -1 for a naked single.
+     */
+    final int unit;
+    /**
+     * Candidates removed from the cells: {@code masks[k]} from {@code cells[k]}, bit {@code d - 1} for digit d.
+     */
+    final int[] cells;
+    final int[] masks;
+
+    Hint(Technique technique, int cell, int digit, int unit, int[] cells, int[] masks) {
+        this.technique = technique;
+        this.cell = cell;
+        this.digit = digit;
+        this.unit = unit;
+        this.cells = cells;
+        this.masks = masks;
+    }
+
+    /**
+     * Describe the step for the player, e.g. "hidden single: 5 at r3c4 in row 3".
+     */
+    String describe(Layout layout) {
+        final StringBuilder b = new StringBuilder(technique.label).append(": ");
+        if (cell >= 0) {
+            b.append(Model.symbol(digit)).append(" at ").append(cellName(layout, cell));
+        } else {
+            int removed = 0;
+            for (int m : masks) {
+                removed |= m;
+            }
+            b.append("remove ").append(digits(removed)).append(" from");
+            for (int i : cells) {
+                b.append(' ').append(cellName(layout, i));
+            }
+        }
+        if (unit >= 0) {
+            b.append(" in ").append(unitName(layout, unit));
+        }
+        return b.toString();
+    }
+
+    private static String cellName(Layout layout, int i) {
+        return "r" + (layout.rowOf[i] + 1) + "c" + (layout.colOf[i] + 1);
+    }
+
+    private static String unitName(Layout layout, int u) {
+        final String[] kinds = {"row", "column", "box"};
+        return kinds[u / layout.size] + " " + (u % layout.size + 1);
+    }
+
+    private static String digits(int mask) {
+        final StringBuilder b = new StringBuilder();
+        for (int m = mask; m != 0; m &= m - 1) {
+            if (b.length() > 0) {
+                b.append(',');
+            }
+            b.append(Model.symbol(Integer.numberOfTrailingZeros(m) + 1));
+        }
+        return b.toString();
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.cloudecho.sudoku;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Precomputed index tables of a board made of box x box subgrids, cells in row-major order.
+ * Instances are immutable and shared, see {@link #of(int)}.
+ */
+final class Layout {
+    private static final ConcurrentMap<Integer, Layout> LAYOUTS = new ConcurrentHashMap<>();
+
+    final int box;
+    final int size;
+    final int cells;
+
+    final int[] rowOf;
+    final int[] colOf;
+    final int[] boxOf;
+
+    /**
+     * Cell indexes of each unit: rows first, then columns, then boxes.
+     */
+    final int[][] units;
+
+    /**
+     * Cell indexes of each box, in row-major order within the box.
+     */
+    final int[][] boxes;
+
+    /**
+     * For each cell, the other cells sharing its row, column or box.
+     */
+    final int[][] peers;
+
+    private Layout(int box) {
+        this.box = box;
+        this.size = box * box;
+        this.cells = size * size;
+
+        this.rowOf = new int[cells];
+        this.colOf = new int[cells];
+        this.boxOf = new int[cells];
+        this.units = new int[3 * size][size];
+        for (int i = 0; i < cells; i++) {
+            final int r = i / size;
+            final int c = i % size;
+            final int b = r / box * box + c / box;
+            rowOf[i] = r;
+            colOf[i] = c;
+            boxOf[i] = b;
+            units[r][c] = i;
+            units[size + c][r] = i;
+            units[2 * size + b][r % box * box + c % box] = i;
+        }
+
+        this.boxes = new int[size][];
+        for (int b = 0; b < size; b++) {
+            boxes[b] = units[2 * size + b];
+        }
+
+        final int n = 3 * (size - 1) - 2 * (box - 1);
+        this.peers = new int[cells][n];
+        for (int i = 0; i < cells; i++) {
+            int k = 0;
+            for (int j = 0; j < cells; j++) {
+                if (j != i && (rowOf[j] == rowOf[i] || colOf[j] == colOf[i] || boxOf[j] == boxOf[i])) {
+                    peers[i][k++] = j;
+                }
+            }
+        }
+    }
+
+    static Layout of(int box) {
+        return LAYOUTS.computeIfAbsent(box, Layout::new);
+    }
+
+    int index(int r, int c) {
+        return r * size + c;
+    }
+}
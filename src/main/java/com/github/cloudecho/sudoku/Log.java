@@ -1,8 +1,30 @@
 package com.github.cloudecho.sudoku;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
 import java.util.logging.Logger;
 
+/**
+ * Logging facade over {@code java.util.logging}.
+ * <p>
+ * The level is checked before anything is built, the fixed-arity methods avoid the varargs array
+ * and a {@link Supplier} defers the message until it is known to be logged.
+ * With the {@value #KEY_LOG_ASYNC} system property, records go through a ring buffer to a
+ * single appender thread, so the logging threads never wait for the handlers.
+ */
 class Log {
+    static final String KEY_LOG_ASYNC = "LOG_ASYNC";
+    static final String KEY_LOG_ASYNC_BUFFER = "LOG_ASYNC_BUFFER";
+    static final int DEFAULT_LOG_ASYNC_BUFFER = 8192;
+
     private static final Logger LOGGER = Logger.getLogger("sudoku");
 
     static {
@@ -10,27 +32,315 @@ class Log {
                 "%1$tY-%1$tm-%1$td %1$tH:%1$tM:%1$tS %3$s %4$s %5$s%6$s%n");
     }
 
+    private static final Object[] NONE = new Object[0];
+    // an argument not given, as null is logged like any other value
+    private static final Object NA = new Object();
+
+    private static final AsyncAppender ASYNC = Boolean.getBoolean(KEY_LOG_ASYNC) ?
+            new AsyncAppender(Integer.getInteger(KEY_LOG_ASYNC_BUFFER, DEFAULT_LOG_ASYNC_BUFFER)) : null;
+
+    static boolean isDebugEnabled() {
+        return LOGGER.isLoggable(Level.FINE);
+    }
+
+    static void debug(Object msg) {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            log(Level.FINE, msg, NA, NA, NONE);
+        }
+    }
+
+    static void debug(Object msg, Object msg2) {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            log(Level.FINE, msg, msg2, NA, NONE);
+        }
+    }
+
     static void debug(Object... msg) {
-        LOGGER.fine(toString(msg));
+        if (LOGGER.isLoggable(Level.FINE)) {
+            log(Level.FINE, NA, NA, NA, msg);
+        }
+    }
+
+    static void debug(Supplier<?> msg) {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            log(Level.FINE, msg);
+        }
+    }
+
+    static void info(Object msg) {
+        if (LOGGER.isLoggable(Level.INFO)) {
+            log(Level.INFO, msg, NA, NA, NONE);
+        }
+    }
+
+    static void info(Object msg, Object msg2) {
+        if (LOGGER.isLoggable(Level.INFO)) {
+            log(Level.INFO, msg, msg2, NA, NONE);
+        }
+    }
+
+    static void info(Object msg, Object msg2, Object msg3) {
+        if (LOGGER.isLoggable(Level.INFO)) {
+            log(Level.INFO, msg, msg2, msg3, NONE);
+        }
     }
 
     static void info(Object... msg) {
-        LOGGER.info(toString(msg));
+        if (LOGGER.isLoggable(Level.INFO)) {
+            log(Level.INFO, NA, NA, NA, msg);
+        }
+    }
+
+    static void info(Supplier<?> msg) {
+        if (LOGGER.isLoggable(Level.INFO)) {
+            log(Level.INFO, msg);
+        }
+    }
+
+    static void warn(Object msg) {
+        if (LOGGER.isLoggable(Level.WARNING)) {
+            log(Level.WARNING, msg, NA, NA, NONE);
+        }
+    }
+
+    static void warn(Object msg, Object msg2) {
+        if (LOGGER.isLoggable(Level.WARNING)) {
+            log(Level.WARNING, msg, msg2, NA, NONE);
+        }
+    }
+
+    static void warn(Object msg, Object msg2, Object msg3) {
+        if (LOGGER.isLoggable(Level.WARNING)) {
+            log(Level.WARNING, msg, msg2, msg3, NONE);
+        }
     }
 
     static void warn(Object... msg) {
-        LOGGER.warning(toString(msg));
+        if (LOGGER.isLoggable(Level.WARNING)) {
+            log(Level.WARNING, NA, NA, NA, msg);
+        }
+    }
+
+    static void warn(Supplier<?> msg) {
+        if (LOGGER.isLoggable(Level.WARNING)) {
+            log(Level.WARNING, msg);
+        }
+    }
+
+    static void error(Object msg) {
+        if (LOGGER.isLoggable(Level.SEVERE)) {
+            log(Level.SEVERE, msg, NA, NA, NONE);
+        }
     }
 
     static void error(Object... msg) {
-        LOGGER.severe(toString(msg));
+        if (LOGGER.isLoggable(Level.SEVERE)) {
+            log(Level.SEVERE, NA, NA, NA, msg);
+        }
+    }
+
+    // leading fixed arguments, NA when not given, then the varargs
+    private static void log(Level level, Object a, Object b, Object c, Object[] more) {
+        final String thread = Thread.currentThread().getName();
+        if (ASYNC == null || !ASYNC.append(level, thread, a, b, c, more, null)) {
+            LOGGER.log(level, toString(thread, a, b, c, more, null));
+        }
+    }
+
+    private static void log(Level level, Supplier<?> msg) {
+        final String thread = Thread.currentThread().getName();
+        if (ASYNC == null || !ASYNC.append(level, thread, NA, NA, NA, NONE, msg)) {
+            LOGGER.log(level, toString(thread, NA, NA, NA, NONE, msg));
+        }
+    }
+
+    private static String toString(String thread, Object a, Object b, Object c, Object[] more, Supplier<?> msg) {
+        StringBuilder b0 = new StringBuilder(thread);
+        if (msg != null) {
+            b0.append(' ').append(msg.get());
+        }
+        if (a != NA) {
+            b0.append(' ').append(a);
+        }
+        if (b != NA) {
+            b0.append(' ').append(b);
+        }
+        if (c != NA) {
+            b0.append(' ').append(c);
+        }
+        for (Object m : more) {
+            b0.append(' ').append(m);
+        }
+        return b0.toString();
     }
 
-    private static String toString(Object... msg) {
-        StringBuilder b = new StringBuilder(Thread.currentThread().getName());
-        for (Object m : msg) {
-            b.append(' ').append(m);
+    /**
+     * Multiple producer, single consumer ring of preallocated entries.
+     * <p>
+     * A producer claims a slot by advancing {@code tail}, fills the entry, then publishes it by writing
+     * its sequence number; the appender thread formats published entries in order and hands them to the logger.
+     * When the ring is full the producer waits for a free slot, so no record is dropped or reordered.
+     * An idle appender parks until a producer publishes an entry and wakes it up.
+     * Immutable arguments are kept as they are, other objects are turned into strings by the producer,
+     * as they might change before the appender gets to them; a supplier is called by the appender.
+     */
+    private static final class AsyncAppender implements Runnable {
+        private static final long FULL_PARK_NANOS = 1_000_000;
+        private static final long FLUSH_MILLIS = 5000;
+
+        private final Entry[] ring;
+        private final int mask;
+        private final AtomicLong tail = new AtomicLong();
+        // next entry to consume, written by the appender thread only
+        private volatile long head;
+        private volatile boolean closing;
+        // set by the appender thread before it parks for want of entries
+        private volatile boolean idle;
+        private final Thread thread;
+        // failures of the handlers are reported here, as a handler reports its own
+        private final ErrorManager errors = new ErrorManager();
+        // the LogManager removes the handlers on shutdown too, the backlog is flushed to these
+        private final List<Handler> handlers = new ArrayList<>();
+
+        AsyncAppender(int capacity) {
+            final int n = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+            this.ring = new Entry[n];
+            this.mask = n - 1;
+            for (int i = 0; i < n; i++) {
+                ring[i] = new Entry();
+            }
+            for (Logger l = LOGGER; l != null; l = l.getUseParentHandlers() ? l.getParent() : null) {
+                handlers.addAll(Arrays.asList(l.getHandlers()));
+            }
+            this.thread = new Thread(this, "sudoku-log");
+            this.thread.setDaemon(true);
+            this.thread.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(this::close, "sudoku-log-flush"));
+        }
+
+        /**
+         * Return false once closing, the record is then to be logged synchronously.
+         */
+        boolean append(Level level, String thread, Object a, Object b, Object c, Object[] more, Supplier<?> msg) {
+            long t;
+            while (true) {
+                if (closing) {
+                    return false;
+                }
+                t = tail.get();
+                if (t - head >= ring.length) {
+                    LockSupport.parkNanos(FULL_PARK_NANOS);
+                } else if (tail.compareAndSet(t, t + 1)) {
+                    break;
+                }
+            }
+
+            final Entry e = ring[(int) t & mask];
+            e.millis = System.currentTimeMillis();
+            e.level = level;
+            e.thread = thread;
+            e.a = snapshot(a);
+            e.b = snapshot(b);
+            e.c = snapshot(c);
+            e.more = more;
+            for (int i = 0; i < more.length; i++) {
+                final Object o = snapshot(more[i]);
+                if (o != more[i]) {
+                    if (e.more == more) {
+                        e.more = more.clone();
+                    }
+                    e.more[i] = o;
+                }
+            }
+            e.msg = msg;
+            e.published = t;
+            if (idle) {
+                LockSupport.unpark(this.thread);
+            }
+            return true;
+        }
+
+        private static Object snapshot(Object o) {
+            return o == null || o == NA || o instanceof String || o instanceof Number || o instanceof Boolean
+                    || o instanceof Character || o instanceof Enum ? o : String.valueOf(o);
+        }
+
+        @Override
+        public void run() {
+            long h = head;
+            while (true) {
+                final Entry e = ring[(int) h & mask];
+                if (e.published != h) {
+                    if (closing && tail.get() == h) {
+                        return;
+                    }
+                    // recheck after raising the flag: either the producer sees it or this sees the entry
+                    idle = true;
+                    if (e.published != h && !closing) {
+                        LockSupport.park(this);
+                    }
+                    idle = false;
+                    continue;
+                }
+
+                final LogRecord record = new LogRecord(e.level, Log.toString(e.thread, e.a, e.b, e.c, e.more, e.msg));
+                record.setLoggerName(LOGGER.getName());
+                setMillis(record, e.millis);
+                e.clear();
+                head = ++h;
+                try {
+                    if (closing) {
+                        for (Handler handler : handlers) {
+                            handler.publish(record);
+                            handler.flush();
+                        }
+                    } else {
+                        LOGGER.log(record);
+                    }
+                } catch (RuntimeException ex) {
+                    errors.error("async logging failed", ex, ErrorManager.WRITE_FAILURE);
+                }
+            }
+        }
+
+        // LogRecord.setInstant needs Java 9, the build targets Java 8
+        @SuppressWarnings("deprecation")
+        private static void setMillis(LogRecord record, long millis) {
+            record.setMillis(millis);
+        }
+
+        private void close() {
+            closing = true;
+            LockSupport.unpark(thread);
+            try {
+                thread.join(FLUSH_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static final class Entry {
+        // sequence number of the record held, -1 once consumed
+        volatile long published = -1;
+        long millis;
+        Level level;
+        String thread;
+        Object a;
+        Object b;
+        Object c;
+        Object[] more;
+        Supplier<?> msg;
+
+        void clear() {
+            level = null;
+            thread = null;
+            a = null;
+            b = null;
+            c = null;
+            more = null;
+            msg = null;
+            published = -1;
         }
-        return b.toString();
     }
 }
@@ -2,11 +2,18 @@ package com.github.cloudecho.sudoku;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * JPanel with a square matrix (row x col)
+ * <p>
+ * Cells marked with {@link #repaintCell(int, int)} are repainted one rectangle each, and only the cells
+ * within the clip are painted. Texts and the overlay are rendered once into images and then copied.
  */
 class MPanel extends JPanel {
     private static final long serialVersionUID = 1L;
@@ -17,9 +24,27 @@ class MPanel extends JPanel {
     final int margin;
     final int width;
     final int height;
+    /**
+     * Cell size in pixels, smaller for boards larger than 9x9.
+     */
+    final int unit;
+    final Font font;
+    // pencil marks: a box x box grid of small digits within a cell
+    private final int markBox;
+    private final Font markFont;
 
     private final List<ComponentPaintListener> paintListeners = new ArrayList<>(1);
 
+    // cells waiting to be repainted, r * col + c
+    private final BitSet dirty = new BitSet();
+    private boolean flushPending;
+
+    // rendered texts by color and text, full-cell and pencil-mark sized
+    private final Map<Color, Map<String, Image>> glyphs = new HashMap<>();
+    private final Map<Color, Map<String, Image>> markGlyphs = new HashMap<>();
+    private ComponentPaintListener overlayPainter;
+    private Image overlay;
+
     public MPanel(int row, int col) {
         this(row, col, 1);
     }
@@ -28,37 +53,133 @@ class MPanel extends JPanel {
         this.row = row;
         this.col = col;
         this.margin = margin;
-        this.width = col * Gui.UNIT_SIZE + margin;
-        this.height = row * Gui.UNIT_SIZE + margin;
+        this.unit = Gui.UNIT_SIZE * Sudoku.ROW / Math.max(Sudoku.ROW, Math.max(row, col));
+        this.font = Gui.FONT.deriveFont((float) (unit / 2));
+        this.markBox = (int) Math.ceil(Math.sqrt(Math.max(row, col)));
+        this.markFont = Gui.FONT.deriveFont((float) Math.max(6, unit / markBox * 3 / 4));
+        this.width = col * unit + margin;
+        this.height = row * unit + margin;
         this.setPreferredSize(new Dimension(width, height));
     }
 
     public void paint(Graphics g, int r, int c, Color color) {
         g.setColor(color);
-        g.fillRect(c * Gui.UNIT_SIZE,
-                r * Gui.UNIT_SIZE,
-                Gui.UNIT_SIZE - margin,
-                Gui.UNIT_SIZE - margin);
+        g.fillRect(c * unit,
+                r * unit,
+                unit - margin,
+                unit - margin);
     }
 
     public void setText(Graphics g, int r, int c, String text, Color color) {
-        int fontSize = Gui.FONT.getSize();
-        int x0 = (Gui.UNIT_SIZE - fontSize) / 2 + 2 * margin;
-        int y0 = (Gui.UNIT_SIZE + fontSize) / 2 - 2 * margin;
+        g.drawImage(glyph(glyphs, font, unit, text, color), c * unit, r * unit, null);
+    }
 
-        g.setColor(color);
-        g.setFont(Gui.FONT);
-        g.drawString(text, c * Gui.UNIT_SIZE + x0, r * Gui.UNIT_SIZE + y0);
+    /**
+     * Draw the pencil marks of a cell, digit d in the d-th place of a box x box grid within the cell.
+     *
+     * @param mask bit {@code d - 1} for digit d
+     */
+    public void setMarks(Graphics g, int r, int c, int mask, Color color) {
+        final int side = unit / markBox;
+        for (int m = mask; m != 0; m &= m - 1) {
+            final int d = Integer.numberOfTrailingZeros(m);
+            g.drawImage(glyph(markGlyphs, markFont, side, Model.symbol(d + 1), color),
+                    c * unit + d % markBox * side, r * unit + d / markBox * side, null);
+        }
+    }
+
+    private Image glyph(Map<Color, Map<String, Image>> cache, Font font, int side, String text, Color color) {
+        final Map<String, Image> byText = cache.computeIfAbsent(color, k -> new HashMap<>());
+        Image image = byText.get(text);
+        if (image == null) {
+            image = translucentImage(side, side);
+            final Graphics g = image.getGraphics();
+            try {
+                int fontSize = font.getSize();
+                int x0 = (side - fontSize) / 2 + 2 * margin;
+                int y0 = (side + fontSize) / 2 - 2 * margin;
+
+                g.setColor(color);
+                g.setFont(font);
+                g.drawString(text, x0, y0);
+            } finally {
+                g.dispose();
+            }
+            byText.put(text, image);
+        }
+        return image;
+    }
+
+    /**
+     * Set what is drawn over the cells' background, e.g. borders; it is rendered once and cached.
+     */
+    public void setOverlay(ComponentPaintListener painter) {
+        this.overlayPainter = painter;
+        this.overlay = null;
+    }
+
+    private Image overlay() {
+        if (overlay == null && overlayPainter != null) {
+            overlay = translucentImage(width, height);
+            final Graphics g = overlay.getGraphics();
+            try {
+                overlayPainter.paintComponent(g);
+            } finally {
+                g.dispose();
+            }
+        }
+        return overlay;
     }
 
-    private void init(Graphics g) {
+    private Image translucentImage(int w, int h) {
+        final GraphicsConfiguration gc = getGraphicsConfiguration();
+        return gc != null ?
+                gc.createCompatibleImage(w, h, Transparency.TRANSLUCENT) :
+                new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * Repaint the cell soon, on its own rather than as part of a larger region.
+     * To be called on the event dispatch thread.
+     */
+    public void repaintCell(int r, int c) {
+        dirty.set(r * col + c);
+        if (!flushPending) {
+            flushPending = true;
+            SwingUtilities.invokeLater(this::flushDirty);
+        }
+    }
+
+    private void flushDirty() {
+        flushPending = false;
+        for (int i = dirty.nextSetBit(0); i >= 0; i = dirty.nextSetBit(i + 1)) {
+            paintImmediately(i % col * unit, i / col * unit, unit, unit);
+        }
+        dirty.clear();
+    }
+
+    /**
+     * Return the cells intersecting the clip: x and width count columns, y and height count rows.
+     */
+    public Rectangle cellsIn(Rectangle clip) {
+        if (clip == null) {
+            return new Rectangle(0, 0, col, row);
+        }
+        final int c0 = Math.max(0, clip.x / unit);
+        final int r0 = Math.max(0, clip.y / unit);
+        final int c1 = Math.min(col, (clip.x + clip.width + unit - 1) / unit);
+        final int r1 = Math.min(row, (clip.y + clip.height + unit - 1) / unit);
+        return new Rectangle(c0, r0, Math.max(0, c1 - c0), Math.max(0, r1 - r0));
+    }
+
+    private void init(Graphics g, Rectangle cells) {
         g.setColor(DEFAULT_COLOR);
-        for (int i = 0; i < this.row; ++i) {
-            for (int j = 0; j < this.col; ++j) {
-                g.fillRect(j * Gui.UNIT_SIZE,
-                        i * Gui.UNIT_SIZE,
-                        Gui.UNIT_SIZE - margin,
-                        Gui.UNIT_SIZE - margin);
+        for (int i = cells.y; i < cells.y + cells.height; ++i) {
+            for (int j = cells.x; j < cells.x + cells.width; ++j) {
+                g.fillRect(j * unit,
+                        i * unit,
+                        unit - margin,
+                        unit - margin);
             }
         }
     }
@@ -67,10 +188,20 @@ class MPanel extends JPanel {
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
 
+        final Rectangle clip = g.getClipBounds();
+        final Rectangle area = new Rectangle(0, 0, width - margin, height - margin);
+        if (clip != null) {
+            area.setBounds(area.intersection(clip));
+        }
         g.setColor(Color.WHITE);
-        g.fillRect(0, 0, width - margin, height - margin);
+        g.fillRect(area.x, area.y, area.width, area.height);
+
+        this.init(g, cellsIn(clip));
 
-        this.init(g);
+        final Image overlay = overlay();
+        if (overlay != null) {
+            g.drawImage(overlay, 0, 0, null);
+        }
 
         paintListeners.forEach(l -> l.paintComponent(g));
     }
@@ -0,0 +1,153 @@
+package com.github.cloudecho.sudoku;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Memory-mapped reader of a line-oriented puzzle file.
+ * <p>
+ * The file is split into line-aligned {@link Chunk}s which can be consumed by different threads.
+ * A chunk maps its own byte range and parses puzzles straight from the mapped bytes into
+ * the caller's cell array, no {@code String} is created per line.
+ */
+class MappedPuzzleReader implements Closeable {
+    private static final int LENGTH = 81;
+    private static final int SCAN_SIZE = 4096;
+
+    private final FileChannel channel;
+    private final long size;
+
+    MappedPuzzleReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+    }
+
+    /**
+     * Split the file into chunks of about {@code chunkBytes} bytes, each ending after a line feed
+     * or at the end of the file.
+     */
+    List<Chunk> split(long chunkBytes) throws IOException {
+        final long step = Math.max(1, Math.min(chunkBytes, Integer.MAX_VALUE / 2));
+        final List<Chunk> chunks = new ArrayList<>();
+        final ByteBuffer scan = ByteBuffer.allocate(SCAN_SIZE);
+        long start = 0;
+        while (start < size) {
+            final long end = lineEnd(start + step, scan);
+            if (end - start > Integer.MAX_VALUE) {
+                throw new IOException("line too long at offset " + start);
+            }
+            chunks.add(new Chunk(channel, start, end));
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * Return the offset just after the first line feed at or after {@code from - 1}.
+     */
+    private long lineEnd(long from, ByteBuffer scan) throws IOException {
+        long pos = from - 1;
+        while (pos < size) {
+            scan.clear();
+            final int n = channel.read(scan, pos);
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                if (scan.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += n;
+        }
+        return size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * A line-aligned byte range of the file, consumed by one thread at a time.
+     */
+    static final class Chunk {
+        static final int END = -1;
+        static final int PUZZLE = 0;
+        static final int SKIPPED = 1;
+        static final int MALFORMED = 2;
+
+        private final FileChannel channel;
+        final long start;
+        final long end;
+
+        private MappedByteBuffer buf;
+        private int pos;
+        private int lineStart;
+        private int lineEnd;
+
+        private Chunk(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Parse the next line into {@code cells}.
+         *
+         * @return {@link #PUZZLE} if the cells were filled, {@link #SKIPPED} for a blank or comment line,
+         * {@link #MALFORMED}, or {@link #END} when the chunk is exhausted
+         */
+        int next(int[] cells) throws IOException {
+            if (buf == null) {
+                buf = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            }
+            final int limit = buf.limit();
+            if (pos >= limit) {
+                return END;
+            }
+
+            lineStart = pos;
+            int i = pos;
+            while (i < limit && buf.get(i) != '\n') {
+                i++;
+            }
+            pos = i + 1;
+            lineEnd = i > lineStart && buf.get(i - 1) == '\r' ? i - 1 : i;
+
+            if (lineEnd == lineStart || buf.get(lineStart) == '#') {
+                return SKIPPED;
+            }
+            if (lineEnd - lineStart < LENGTH) {
+                return MALFORMED;
+            }
+            for (int k = 0; k < LENGTH; k++) {
+                final byte ch = buf.get(lineStart + k);
+                if (ch == '.' || ch == '0') {
+                    cells[k] = 0;
+                } else if (ch >= '1' && ch <= '9') {
+                    cells[k] = ch - '0';
+                } else {
+                    return MALFORMED;
+                }
+            }
+            return PUZZLE;
+        }
+
+        /**
+         * Append the text of the line last returned by {@link #next(int[])}.
+         */
+        void appendLine(StringBuilder b) {
+            for (int i = lineStart; i < lineEnd; i++) {
+                b.append((char) (buf.get(i) & 0xff));
+            }
+        }
+    }
+}
@@ -1,107 +1,332 @@
 package com.github.cloudecho.sudoku;
 
-import java.util.concurrent.CountDownLatch;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Model factory.
+ * <p>
+ * A board is made of box x box subgrids and holds the digits {@code 1..box*box}:
+ * 9x9 for box 3, 16x16 for box 4, 25x25 for box 5.
  */
 public class Model {
+    /**
+     * Digits of the standard 9x9 board.
+     */
     public static final int MAX_NUM = 9;
 
+    public static final int MIN_BOX = 2;
+    public static final int MAX_BOX = 5;
+
     private static final byte MARK_ROW = -1;
     private static final byte MARK_COL = -2;
     private static final byte MARK_SUBGRID = -4;
 
     final int row;
     final int col;
-    private final byte[][] m;
+    /**
+     * Number of digits, also the number of cells of a row, column or subgrid.
+     */
+    final int size;
+    private final Layout layout;
+    /**
+     * Cells in row-major order.
+     */
+    private final byte[] m;
+
+    /**
+     * How many times each digit occurs in each unit, {@code counts[unit * (size + 1) + digit]},
+     * kept up to date by {@link #put(int, byte)}.
+     */
+    private final byte[] counts;
+    // cells holding a digit
+    private int filled;
+    // extra occurrences of digits over all units
+    private int duplicates;
 
     public Model(int row, int col) {
-        this.row = row;
-        this.col = col;
-        this.m = new byte[row][col];
+        this(boxOf(row, col));
+    }
+
+    /**
+     * A board of box x box subgrids, {@code box * box} cells wide.
+     */
+    public Model(int box) {
+        if (box < MIN_BOX || box > MAX_BOX) {
+            throw new IllegalArgumentException("box size out of range: " + box);
+        }
+        this.layout = Layout.of(box);
+        this.size = layout.size;
+        this.row = size;
+        this.col = size;
+        this.m = new byte[layout.cells];
+        this.counts = new byte[layout.units.length * (size + 1)];
+    }
+
+    private static int boxOf(int row, int col) {
+        final int box = (int) Math.round(Math.sqrt(row));
+        if (row != col || box * box != row) {
+            throw new IllegalArgumentException("not a square board of square subgrids: " + row + "x" + col);
+        }
+        return box;
+    }
+
+    int box() {
+        return layout.box;
+    }
+
+    /**
+     * Symbol of a digit: {@code 1-9}, then {@code A, B, ...} for 10 and above.
+     */
+    static String symbol(int digit) {
+        return digit <= 9 ? String.valueOf(digit) : String.valueOf((char) ('A' + digit - 10));
+    }
+
+    /**
+     * Search nodes allowed to the randomized backtracking before falling back to a permuted pattern.
+     */
+    private static final long MAX_GENERATE_NODES = 10_000;
+
+    private static final ThreadLocal<PropagationSolver[]> PROPAGATION_SOLVERS =
+            ThreadLocal.withInitial(() -> new PropagationSolver[MAX_BOX + 1]);
+    private static final ThreadLocal<DlxSolver[]> DLX_SOLVERS =
+            ThreadLocal.withInitial(() -> new DlxSolver[MAX_BOX + 1]);
+    private static final ThreadLocal<Grader[]> GRADERS =
+            ThreadLocal.withInitial(() -> new Grader[MAX_BOX + 1]);
+    private static final ThreadLocal<Canonicalizer[]> CANONICALIZERS =
+            ThreadLocal.withInitial(() -> new Canonicalizer[Canonicalizer.MAX_BOX + 1]);
+
+    /**
+     * The calling thread's propagation solver for this box size.
+     */
+    PropagationSolver propagationSolver() {
+        return propagationSolver(layout.box);
     }
 
+    static PropagationSolver propagationSolver(int box) {
+        final PropagationSolver[] solvers = PROPAGATION_SOLVERS.get();
+        if (solvers[box] == null) {
+            solvers[box] = new PropagationSolver(box);
+        }
+        return solvers[box];
+    }
+
+    /**
+     * The calling thread's DLX solver for this box size.
+     */
+    DlxSolver dlxSolver() {
+        return dlxSolver(layout.box);
+    }
+
+    static DlxSolver dlxSolver(int box) {
+        final DlxSolver[] solvers = DLX_SOLVERS.get();
+        if (solvers[box] == null) {
+            solvers[box] = new DlxSolver(box);
+        }
+        return solvers[box];
+    }
+
+    /**
+     * The calling thread's grader for this box size.
+     */
+    static Grader grader(int box) {
+        final Grader[] graders = GRADERS.get();
+        if (graders[box] == null) {
+            graders[box] = new Grader(box);
+        }
+        return graders[box];
+    }
+
+    /**
+     * The calling thread's canonicalizer for this box size, up to {@link Canonicalizer#MAX_BOX}.
+     */
+    static Canonicalizer canonicalizer(int box) {
+        final Canonicalizer[] canonicalizers = CANONICALIZERS.get();
+        if (canonicalizers[box] == null) {
+            canonicalizers[box] = new Canonicalizer(box);
+        }
+        return canonicalizers[box];
+    }
+
+    /**
+     * Fill the whole board with a random valid grid, in bounded time.
+     * <p>
+     * The grid comes from a randomized backtracking search; should that exceed
+     * {@link #MAX_GENERATE_NODES}, a shuffled base pattern is used instead.
+     */
     public void random() {
-        for (int i = 1; ; i++) {
-            this.reset();
-            if (random0()) {
-                Log.info("success at trial #" + i);
-                break;
+        final long start = System.nanoTime();
+        final Random random = ThreadLocalRandom.current();
+        final int[] cells = new int[layout.cells];
+        final boolean fallback = !propagationSolver().fill(cells, random, MAX_GENERATE_NODES * size);
+        if (fallback) {
+            Log.warn("randomized search gave up, use a permuted pattern");
+            patternGrid(cells, random);
+        }
+        for (int i = 0; i < cells.length; i++) {
+            put(i, (byte) cells[i]);
+        }
+        SolverStats.get().generated(fallback, System.nanoTime() - start);
+    }
+
+    /**
+     * Fill a valid grid from the base pattern, then shuffle it with validity-preserving
+     * permutations: rows within bands, bands, columns within stacks, stacks, digits and transposition.
+     */
+    private void patternGrid(int[] cells, Random random) {
+        final int box = layout.box;
+        final int size = layout.size;
+        final int[] rows = shuffledLines(box, random);
+        final int[] cols = shuffledLines(box, random);
+        final int[] digits = shuffledIndexes(size, random);
+        final boolean transpose = random.nextBoolean();
+
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                final int i = transpose ? rows[c] : rows[r];
+                final int j = transpose ? cols[r] : cols[c];
+                final int pattern = (box * (i % box) + i / box + j) % size;
+                cells[layout.index(r, c)] = digits[pattern] + 1;
             }
         }
     }
 
+    /**
+     * Shuffle the bands (or stacks), then the lines within each of them.
+     */
+    private static int[] shuffledLines(int box, Random random) {
+        final int[] bands = shuffledIndexes(box, random);
+        final int[] lines = new int[box * box];
+        for (int b = 0; b < box; b++) {
+            final int[] within = shuffledIndexes(box, random);
+            for (int k = 0; k < box; k++) {
+                lines[b * box + k] = bands[b] * box + within[k];
+            }
+        }
+        return lines;
+    }
+
     private boolean random0() {
-        final byte[][] sub = new byte[3][3];
-        for (int x = 0; x < row / 3; x++) {
-            for (int y = 0; y < col / 3; y++) {
-                this.copySubgrid(x, y, sub);
-                boolean ok = false;
-                // try more times
-                for (int z = 0; z < 3 * MAX_NUM; z++) {
-                    ok = subgrid(x, y);
-                    if (ok) {
-                        break;
-                    }
-                    // reset subgrid
-                    this.restoreSubgrid(x, y, sub);
-                }
-                if (!ok) {
-                    return false;
+        final byte[] sub = new byte[size];
+        for (int b = 0; b < layout.size; b++) {
+            this.copySubgrid(b, sub);
+            boolean ok = false;
+            // try more times
+            for (int z = 0; z < 3 * size; z++) {
+                ok = subgrid(b);
+                if (ok) {
+                    break;
                 }
+                // reset subgrid
+                this.restoreSubgrid(b, sub);
+            }
+            if (!ok) {
+                return false;
             }
         }
         // success
         return true;
     }
 
-    private void copySubgrid(int x, int y, byte[][] dest) {
-        final int i0 = 3 * x;
-        final int j0 = 3 * y;
-        for (int i = 0; i < 3; i++) {
-            for (int j = 0; j < 3; j++) {
-                dest[i][j] = this.m[i0 + i][j0 + j];
-            }
+    private void copySubgrid(int b, byte[] dest) {
+        final int[] cells = layout.boxes[b];
+        for (int k = 0; k < cells.length; k++) {
+            dest[k] = this.m[cells[k]];
         }
     }
 
-    private void restoreSubgrid(int x, int y, byte[][] src) {
-        final int i0 = 3 * x;
-        final int j0 = 3 * y;
-        for (int i = 0; i < 3; i++) {
-            for (int j = 0; j < 3; j++) {
-                this.m[i0 + i][j0 + j] = src[i][j];
-            }
+    private void restoreSubgrid(int b, byte[] src) {
+        final int[] cells = layout.boxes[b];
+        for (int k = 0; k < cells.length; k++) {
+            put(cells[k], src[k]);
         }
     }
 
     public byte get(int r, int c) {
-        return this.m[r][c];
+        return this.m[r * col + c];
     }
 
     public void set(int r, int c, byte val) {
-        this.m[r][c] = val;
+        put(r * col + c, val);
     }
 
-    private boolean subgrid(final int x, final int y) {
-        final int i0 = 3 * x;
-        final int j0 = 3 * y;
-        byte[] a = arr1to9();
-        markSubgrid(i0, j0, a);
+    /**
+     * The only place where cells are written: keeps the digit counts up to date.
+     */
+    private void put(int idx, byte val) {
+        final int old = digitOf(this.m[idx]);
+        final int digit = digitOf(val);
+        this.m[idx] = val;
+        if (old == digit) {
+            return;
+        }
+
+        final int stride = size + 1;
+        final int r = layout.rowOf[idx] * stride;
+        final int c = (layout.size + layout.colOf[idx]) * stride;
+        final int b = (2 * layout.size + layout.boxOf[idx]) * stride;
+        if (old > 0) {
+            filled--;
+            duplicates -= (--counts[r + old] > 0 ? 1 : 0)
+                    + (--counts[c + old] > 0 ? 1 : 0)
+                    + (--counts[b + old] > 0 ? 1 : 0);
+        }
+        if (digit > 0) {
+            filled++;
+            duplicates += (++counts[r + digit] > 1 ? 1 : 0)
+                    + (++counts[c + digit] > 1 ? 1 : 0)
+                    + (++counts[b + digit] > 1 ? 1 : 0);
+        }
+    }
+
+    /**
+     * The digit shown in a cell, 0 for empty or hidden.
+     */
+    private static int digitOf(byte val) {
+        final byte n = Colors.originalDigit(val);
+        return n > 0 ? n : 0;
+    }
+
+    /**
+     * Return true if the digit occurs in another cell of the row, column or subgrid of (r, c). O(1).
+     *
+     * @throws IllegalArgumentException if the digit is not in {@code 1..size}
+     */
+    public boolean conflicts(int r, int c, byte digit) {
+        if (digit < 1 || digit > size) {
+            throw new IllegalArgumentException("digit out of range: " + digit);
+        }
+        final int idx = r * col + c;
+        final int self = digitOf(this.m[idx]) == digit ? 1 : 0;
+        final int stride = size + 1;
+        return counts[layout.rowOf[idx] * stride + digit] > self
+                || counts[(layout.size + layout.colOf[idx]) * stride + digit] > self
+                || counts[(2 * layout.size + layout.boxOf[idx]) * stride + digit] > self;
+    }
+
+    private boolean subgrid(final int b) {
+        final int[] cells = layout.boxes[b];
+        byte[] a = arr1toN();
+        markSubgrid(cells, a);
 
         // for each number in the subgrid
-        for (int k = 0; k < MAX_NUM; k++) {
-            final int i1 = k / 3;
-            final int j1 = k % 3;
+        for (int k = 0; k < size; k++) {
+            final int idx = cells[k];
 
-            markRow(i0, j0, a, i1, j1);
-            markColumn(i0, j0, a, i1, j1);
+            markRow(a, k, layout.rowOf[idx]);
+            markColumn(a, layout.colOf[idx]);
 
-            if (this.m[i0 + i1][j0 + j1] > 0) {
+            if (this.m[idx] > 0) {
                 continue;
             }
 
@@ -117,7 +342,7 @@ public class Model {
                     continue;
                 }
                 if (w == 0) {
-                    this.m[i0 + i1][j0 + j1] = a[i];
+                    put(idx, a[i]);
                     // mark deleted
                     a[i] = MARK_SUBGRID;
                     found = true;
@@ -135,19 +360,17 @@ public class Model {
         return true;
     }
 
-    private void markSubgrid(final int i0, final int j0, final byte[] a) {
-        for (int i = 0; i < 3; i++) {
-            for (int j = 0; j < 3; j++) {
-                byte n = this.m[i0 + i][j0 + j];
-                if (n > 0) {
-                    a[n - 1] = MARK_SUBGRID;
-                }
+    private void markSubgrid(final int[] cells, final byte[] a) {
+        for (int idx : cells) {
+            byte n = this.m[idx];
+            if (n > 0) {
+                a[n - 1] = MARK_SUBGRID;
             }
         }
     }
 
-    private void markRow(final int i0, final int j0, final byte[] a, final int i1, final int j1) {
-        if (j1 > 0) {
+    private void markRow(final byte[] a, final int k, final int r) {
+        if (k % layout.box > 0) {
             return;
         }
 
@@ -159,15 +382,15 @@ public class Model {
         }
 
         // mark delete (row)
-        for (int j = 0; j < col; j++) {
-            byte n = m[i0 + i1][j];
+        for (int idx : layout.units[r]) {
+            byte n = m[idx];
             if (n > 0 && a[n - 1] > 0) {
                 a[n - 1] = MARK_ROW;
             }
         }
     }
 
-    private void markColumn(final int i0, final int j0, final byte[] a, final int i1, final int j1) {
+    private void markColumn(final byte[] a, final int c) {
         // unmark previous column
         for (int i = 0; i < a.length; i++) {
             if (MARK_COL == a[i]) {
@@ -175,64 +398,160 @@ public class Model {
             }
         }
 
-        for (int i = 0; i < row; i++) {
-            byte n = m[i][j0 + j1];
+        for (int idx : layout.units[layout.size + c]) {
+            byte n = m[idx];
             if (n > 0 && a[n - 1] > 0) {
                 a[n - 1] = MARK_COL;
             }
         }
     }
 
-    private static final int MAX_HIDES_IN_SUBGRID = 7;
+    /**
+     * At least two digits stay visible in each subgrid.
+     */
+    private int maxHidesInSubgrid() {
+        return size - 2;
+    }
 
     public void hideDigits(float probability) {
+        hideDigits(probability, false);
+    }
+
+    /**
+     * Hide digits with the given probability.
+     *
+     * @param unique if true, remove clues one at a time in random order and keep only
+     *               the removals after which the puzzle still has exactly one solution
+     */
+    public void hideDigits(float probability, boolean unique) {
+        if (unique) {
+            hideDigitsUnique(probability);
+            return;
+        }
+
         final int maxHides = maxHides(probability);
+        final int maxHidesInSubgrid = maxHidesInSubgrid();
         int hides = 0;
 
-        for (int x = 0; x < this.row / 3; x++) {
-            for (int y = 0; y < this.col / 3; y++) {
-                // for each subgrid
-                int hidesInSubgrid = 0;
-                for (int k = 0; k < Model.MAX_NUM; k++) {
-                    if (Math.random() < probability) {
-                        final int i = 3 * x + k / 3;
-                        final int j = 3 * y + k % 3;
-                        this.m[i][j] = (byte) (-this.m[i][j]);
-
-                        if (++hides >= maxHides) {
-                            return;
-                        }
-                        if (++hidesInSubgrid >= MAX_HIDES_IN_SUBGRID) {
-                            break;
-                        }
+        // for each subgrid
+        for (int[] cells : layout.boxes) {
+            int hidesInSubgrid = 0;
+            for (int idx : cells) {
+                if (Math.random() < probability) {
+                    put(idx, (byte) (-this.m[idx]));
+
+                    if (++hides >= maxHides) {
+                        return;
+                    }
+                    if (++hidesInSubgrid >= maxHidesInSubgrid) {
+                        break;
                     }
                 }
             }
         }
     }
 
-    public void reset() {
-        for (int i = 0; i < row; i++) {
-            for (int j = 0; j < col; j++) {
-                m[i][j] = 0;
+    /**
+     * Search nodes allowed to each uniqueness check of {@link #hideDigitsUnique(float)}.
+     * Large boards get hard to check once sparse; clues are kept rather than waiting.
+     */
+    private static final long MAX_UNIQUENESS_NODES = 200;
+
+    private void hideDigitsUnique(float probability) {
+        hideDigitsUnique(probability, -1);
+    }
+
+    /**
+     * Hide digits as {@link #hideDigits(float, boolean)} does with {@code unique} set, then keep hiding
+     * clues one at a time while the {@link Grader} rates the puzzle below the given difficulty.
+     *
+     * @return the grade of the puzzle; its difficulty is below the one asked for if no more clue
+     * could be hidden, above it if the last clue hidden made it jump past
+     */
+    Grader.Grade hideDigits(float probability, int difficulty) {
+        return hideDigitsUnique(probability, difficulty);
+    }
+
+    // difficulty -1 to stop at the probability without grading
+    private Grader.Grade hideDigitsUnique(float probability, int difficulty) {
+        final int maxHides = maxHides(probability);
+        final int[] cells = toCells();
+        final int[] order = shuffledIndexes(cells.length);
+        final int maxHidesInSubgrid = maxHidesInSubgrid();
+        final int[] hidesInSubgrid = new int[size];
+        final PropagationSolver solver = propagationSolver();
+        final Grader grader = difficulty < 0 ? null : grader(layout.box);
+        Grader.Grade grade = null;
+        int hides = 0;
+
+        for (int k = 0; k < order.length; k++) {
+            if (hides >= maxHides) {
+                if (grader == null) {
+                    break;
+                }
+                if (grade == null) {
+                    grade = grader.grade(cells);
+                }
+                if (grade.difficulty() >= difficulty) {
+                    break;
+                }
             }
+            final int idx = order[k];
+            final int x = layout.boxOf[idx];
+            final int n = cells[idx];
+            if (n == 0 || hidesInSubgrid[x] >= maxHidesInSubgrid) {
+                continue;
+            }
+
+            cells[idx] = 0;
+            if (solver.countSolutions(cells, 2, MAX_UNIQUENESS_NODES) != 1 || solver.aborted()) {
+                // keep the clue, also when uniqueness could not be proven in time
+                cells[idx] = n;
+                continue;
+            }
+            put(idx, (byte) (-this.m[idx]));
+            hidesInSubgrid[x]++;
+            hides++;
+            grade = null;
         }
+        return grader == null || grade != null ? grade : grader.grade(cells);
     }
 
-    private int maxHides(float probability) {
-        return (int) Math.ceil(row * col * probability);
+    private static int[] shuffledIndexes(int n) {
+        return shuffledIndexes(n, ThreadLocalRandom.current());
     }
 
-    private static final byte[] ARR_1_TO_9 = new byte[MAX_NUM];
-
-    static {
-        for (int i = 0; i < MAX_NUM; i++) {
-            ARR_1_TO_9[i] = (byte) (i + 1);
+    private static int[] shuffledIndexes(int n, Random random) {
+        final int[] a = new int[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = i;
         }
+        for (int i = n - 1; i > 0; i--) {
+            final int j = random.nextInt(i + 1);
+            final int t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+        return a;
+    }
+
+    public void reset() {
+        Arrays.fill(m, (byte) 0);
+        Arrays.fill(counts, (byte) 0);
+        filled = 0;
+        duplicates = 0;
+    }
+
+    private int maxHides(float probability) {
+        return (int) Math.ceil(row * col * probability);
     }
 
-    private byte[] arr1to9() {
-        return ARR_1_TO_9.clone();
+    private byte[] arr1toN() {
+        final byte[] a = new byte[size];
+        for (int i = 0; i < size; i++) {
+            a[i] = (byte) (i + 1);
+        }
+        return a;
     }
 
     private int unmarkedNum(byte[] a) {
@@ -249,52 +568,18 @@ public class Model {
         return ThreadLocalRandom.current().nextInt(n);
     }
 
-    public boolean isSolved() {
-        // check each subgrid
-        for (int x = 0; x < row / 3; x++) {
-            for (int y = 0; y < col / 3; y++) {
-                // for each number in the subgrid
-                byte[] a = arr1to9();
-                for (int k = 0; k < MAX_NUM; k++) {
-                    final int i = 3 * x + k / 3;
-                    final int j = 3 * y + k % 3;
-                    byte n = Colors.originalDigit(this.m[i][j]);
-                    if (n <= 0) {
-                        return false;
-                    }
-                    a[n - 1] = MARK_SUBGRID;
-                }
-                if (unmarkedNum(a) > 0) {
-                    return false;
-                }
-            }
-        }
-
-        // check each row
-        for (int i = 0; i < row; i++) {
-            byte[] a = arr1to9();
-            for (int j = 0; j < col; j++) {
-                byte n = Colors.originalDigit(this.m[i][j]);
-                a[n - 1] = MARK_ROW;
-            }
-            if (unmarkedNum(a) > 0) {
-                return false;
-            }
-        }
-
-        // check each column
-        for (int j = 0; j < col; j++) {
-            byte[] a = arr1to9();
-            for (int i = 0; i < row; i++) {
-                byte n = Colors.originalDigit(this.m[i][j]);
-                a[n - 1] = MARK_COL;
-            }
-            if (unmarkedNum(a) > 0) {
-                return false;
-            }
-        }
+    /**
+     * Return true if some row, column or subgrid repeats a digit. O(1).
+     */
+    boolean hasConflicts() {
+        return duplicates > 0;
+    }
 
-        return true;
+    /**
+     * Return true if every cell holds a digit and no unit repeats one. O(1).
+     */
+    public boolean isSolved() {
+        return filled == m.length && duplicates == 0;
     }
 
     @Override
@@ -302,15 +587,33 @@ public class Model {
         StringBuilder b = new StringBuilder("{ sudoku ");
         b.append(row).append('x').append(col).append('\n');
 
+        final int box = layout.box;
+        final int width = String.valueOf(size).length();
+        final StringBuilder separator = new StringBuilder();
+        for (int j = 0; j < col; j++) {
+            if (j > 0 && j % box == 0) {
+                separator.append("+ ");
+            }
+            for (int w = 0; w < width; w++) {
+                separator.append('-');
+            }
+            separator.append(' ');
+        }
+        separator.setCharAt(separator.length() - 1, '\n');
+
         for (int i = 0; i < row; i++) {
-            if (i > 0 && i % 3 == 0) {
-                b.append("- - - + - - - + - - -\n");
+            if (i > 0 && i % box == 0) {
+                b.append(separator);
             }
             for (int j = 0; j < col; j++) {
-                if (j > 0 && j % 3 == 0) {
+                if (j > 0 && j % box == 0) {
                     b.append("| ");
                 }
-                b.append(m[i][j]).append(' ');
+                final String n = String.valueOf(m[i * col + j]);
+                for (int w = n.length(); w < width; w++) {
+                    b.append(' ');
+                }
+                b.append(n).append(' ');
             }
             b.append('\n');
         }
@@ -321,67 +624,321 @@ public class Model {
     static final String KEY_SOLVING_THREADS = "SOLVING_THREADS";
     static final String DEFAULT_SOLVING_THREADS = "2";
 
-    public void solve() {
-        final int n = Integer.parseInt(System.getProperty(KEY_SOLVING_THREADS, DEFAULT_SOLVING_THREADS));
-        final AtomicBoolean solved = new AtomicBoolean(false);
-        final AtomicLong trial = new AtomicLong(1);
-        final CountDownLatch latch = new CountDownLatch(n);
+    static final String KEY_SOLVING_ENGINE = "SOLVING_ENGINE";
+    static final String ENGINE_PROPAGATION = "propagation";
+    static final String ENGINE_RANDOM = "random";
+    static final String ENGINE_DLX = "dlx";
+    static final String ENGINE_PORTFOLIO = "portfolio";
+    static final String ENGINE_SAT = "sat";
+    static final String DEFAULT_SOLVING_ENGINE = ENGINE_PROPAGATION;
+
+    /**
+     * Solve with the engine named by the {@value #KEY_SOLVING_ENGINE} system property,
+     * blocking until done.
+     *
+     * @return false if the puzzle has no solution or the calling thread was interrupted
+     */
+    public boolean solve() {
+        final String engine = engine();
+        if (ENGINE_RANDOM.equals(engine)) {
+            final CancellationToken token = new CancellationToken();
+            try {
+                return randomSolve(token, CancellationToken.NO_DEADLINE).get() == SolveStatus.SOLVED;
+            } catch (InterruptedException e) {
+                token.cancel();
+                Thread.currentThread().interrupt();
+                Log.warn("thread", Thread.currentThread().getName(), "interrupted");
+                return false;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("solving failed", e.getCause());
+            }
+        }
 
-        for (int i = 0; i < n; i++) {
-            Thread t = new Thread(new RandomSolver(this, solved, trial, latch), "sudoku-solver-" + i);
-            t.setDaemon(true);
-            t.start();
+        final SolveStatus status = solveCells(cellSolver(engine).get(),
+                CancellationToken.NONE, CancellationToken.NO_DEADLINE);
+        if (SolveStatus.UNSOLVABLE == status) {
+            Log.warn("no solution");
+        }
+        return SolveStatus.SOLVED == status;
+    }
+
+    /**
+     * Solve asynchronously with the engine named by the {@value #KEY_SOLVING_ENGINE} system property.
+     * The model must not be touched until the returned future completes; it is filled in when
+     * the status is {@link SolveStatus#SOLVED}. To stop the search, cancel the token.
+     *
+     * A {@link SolverPool} that rejects the search completes the future exceptionally with the
+     * {@link RejectedExecutionException}, whatever the engine.
+     *
+     * @param timeout give up with {@link SolveStatus#TIMED_OUT} after this long
+     * @param token   give up with {@link SolveStatus#CANCELLED} once cancelled
+     */
+    public CompletableFuture<SolveStatus> solveAsync(long timeout, TimeUnit unit, CancellationToken token) {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        final String engine = engine();
+        if (ENGINE_RANDOM.equals(engine)) {
+            return randomSolve(token, deadline);
         }
 
+        final Supplier<CellSolver> solver = cellSolver(engine);
         try {
-            latch.await();
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("thread " + Thread.currentThread().getName() + " interrupted", e);
+            return CompletableFuture.supplyAsync(() -> solveCells(solver.get(), token, deadline), SolverPool.shared());
+        } catch (RejectedExecutionException e) {
+            // fail like the random engine does, rather than throwing at the caller
+            final CompletableFuture<SolveStatus> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    private static String engine() {
+        return System.getProperty(KEY_SOLVING_ENGINE, DEFAULT_SOLVING_ENGINE);
+    }
+
+    private Supplier<CellSolver> cellSolver(String engine) {
+        switch (engine) {
+            case ENGINE_PROPAGATION:
+                return this::propagationSolver;
+            case ENGINE_DLX:
+                return this::dlxSolver;
+            case ENGINE_PORTFOLIO:
+                return () -> new PortfolioSolver(layout.box);
+            case ENGINE_SAT:
+                return () -> new SatSolver(layout.box);
+            default:
+                throw new IllegalArgumentException("unknown solving engine: " + engine);
         }
     }
 
+    private SolveStatus solveCells(CellSolver solver, CancellationToken token, long deadline) {
+        final long start = System.nanoTime();
+        final SolveStatus status = solveCells0(solver, token, deadline);
+        SolverStats.get().solved(status, System.nanoTime() - start);
+        return status;
+    }
+
+    private SolveStatus solveCells0(CellSolver solver, CancellationToken token, long deadline) {
+        if (duplicates > 0) {
+            return SolveStatus.UNSOLVABLE;
+        }
+        final int[] cells = toCells();
+        final SolutionCache cache = SolutionCache.shared();
+        if (cache != null) {
+            final int[] solution = cache.get(layout.box, cells);
+            if (solution != null) {
+                fromCells(solution);
+                return SolveStatus.SOLVED;
+            }
+        }
+        final int[] puzzle = cache != null ? cells.clone() : null;
+        if (solver.solve(cells, token, deadline)) {
+            fromCells(cells);
+            if (cache != null) {
+                cache.put(layout.box, puzzle, cells);
+            }
+            return SolveStatus.SOLVED;
+        }
+        if (!solver.aborted()) {
+            return SolveStatus.UNSOLVABLE;
+        }
+        return token.isCancelled() ? SolveStatus.CANCELLED : SolveStatus.TIMED_OUT;
+    }
+
+    /**
+     * Count the solutions, stopping as soon as {@code limit} solutions are found.
+     */
+    public int countSolutions(int limit) {
+        return dlxSolver().countSolutions(toCells(), limit);
+    }
+
+    /**
+     * Return up to {@code limit} solutions, each as digits in row-major order.
+     */
+    public List<int[]> solutions(int limit) {
+        return dlxSolver().solutions(toCells(), limit);
+    }
+
+    /**
+     * Count every solution, splitting the search over the solver pool, see {@link SolutionEnumerator}.
+     */
+    public long countAllSolutions() {
+        return countAllSolutions(CancellationToken.NONE, CancellationToken.NO_DEADLINE);
+    }
+
+    /**
+     * Count the solutions like {@link #countAllSolutions()}, stopping early once the token is cancelled
+     * or the deadline, in {@link System#nanoTime()} terms, has passed.
+     *
+     * @return the number of solutions found, all of them unless stopped early
+     */
+    public long countAllSolutions(CancellationToken token, long deadline) {
+        return forEachSolution(null, token, deadline);
+    }
+
+    /**
+     * Pass every solution, as digits in row-major order, to the sink from the solver pool threads.
+     *
+     * @return the number of solutions
+     */
+    public long forEachSolution(Consumer<int[]> sink) {
+        return forEachSolution(sink, CancellationToken.NONE, CancellationToken.NO_DEADLINE);
+    }
+
+    /**
+     * Pass the solutions to the sink like {@link #forEachSolution(Consumer)}, stopping early once the token
+     * is cancelled or the deadline, in {@link System#nanoTime()} terms, has passed.
+     *
+     * @param sink null to only count the solutions
+     * @return the number of solutions found, all of them unless stopped early
+     */
+    public long forEachSolution(Consumer<int[]> sink, CancellationToken token, long deadline) {
+        return new SolutionEnumerator(layout.box).forEach(toCells(), sink, token, deadline);
+    }
+
+    public boolean hasUniqueSolution() {
+        return countSolutions(2) == 1;
+    }
+
+    /**
+     * Digits in row-major order, 0 for empty or hidden cells.
+     */
+    int[] toCells() {
+        final int[] cells = new int[m.length];
+        for (int i = 0; i < m.length; i++) {
+            final byte n = Colors.originalDigit(this.m[i]);
+            cells[i] = n > 0 ? n : 0;
+        }
+        return cells;
+    }
+
+    /**
+     * Fill the empty or hidden cells with the given digits.
+     */
+    void fromCells(int[] cells) {
+        for (int i = 0; i < m.length; i++) {
+            if (this.m[i] <= 0) {
+                put(i, (byte) cells[i]);
+            }
+        }
+    }
+
+    /**
+     * Race {@value #KEY_SOLVING_THREADS} random solvers on the {@link SolverPool}. The random search cannot prove
+     * a puzzle unsolvable, so unless the givens conflict it ends solved, timed out or cancelled.
+     */
+    private CompletableFuture<SolveStatus> randomSolve(CancellationToken token, long deadline) {
+        final long start = System.nanoTime();
+        final CompletableFuture<SolveStatus> result = new CompletableFuture<>();
+        result.thenAccept(status -> SolverStats.get().solved(status, System.nanoTime() - start));
+        if (duplicates > 0) {
+            result.complete(SolveStatus.UNSOLVABLE);
+            return result;
+        }
+        final SolutionCache cache = SolutionCache.shared();
+        if (cache != null) {
+            final int[] puzzle = toCells();
+            final int[] solution = cache.get(layout.box, puzzle);
+            if (solution != null) {
+                fromCells(solution);
+                result.complete(SolveStatus.SOLVED);
+                return result;
+            }
+            result.thenAccept(status -> {
+                if (SolveStatus.SOLVED == status) {
+                    cache.put(layout.box, puzzle, toCells());
+                }
+            });
+        }
+
+        final int n = Integer.parseInt(System.getProperty(KEY_SOLVING_THREADS, DEFAULT_SOLVING_THREADS));
+        final AtomicLong trial = new AtomicLong(1);
+        final AtomicInteger running = new AtomicInteger(n);
+
+        final SolverPool pool = SolverPool.shared();
+        for (int i = 0; i < n; i++) {
+            try {
+                pool.execute(new RandomSolver(this, result, trial, running, token, deadline));
+            } catch (RejectedExecutionException e) {
+                // the solvers already started go on, unless there are none
+                if (running.addAndGet(i - n) == 0) {
+                    result.completeExceptionally(e);
+                }
+                break;
+            }
+        }
+        return result;
+    }
+
     private static class RandomSolver implements Runnable {
+        // poll the cancellation token every 1024 trials
+        private static final int STOP_CHECK_MASK = 1023;
+
         private final Model model;
-        private final AtomicBoolean solved;
+        private final CompletableFuture<SolveStatus> result;
         private final AtomicLong trial;
-        private final CountDownLatch latch;
+        private final AtomicInteger running;
+        private final CancellationToken token;
+        private final long deadline;
 
-        public RandomSolver(Model model, AtomicBoolean solved, AtomicLong trial, CountDownLatch latch) {
+        public RandomSolver(Model model, CompletableFuture<SolveStatus> result, AtomicLong trial,
+                            AtomicInteger running, CancellationToken token, long deadline) {
             this.model = model;
-            this.solved = solved;
+            this.result = result;
             this.trial = trial;
-            this.latch = latch;
+            this.running = running;
+            this.token = token;
+            this.deadline = deadline;
         }
 
         public void run() {
-            final Model c = model.modelClone();
-            for (long i = trial.get(); !solved.get(); i = trial.incrementAndGet()) {
+            final Model origin = model.modelClone();
+            final Model c = origin.modelClone();
+            long k = 0;
+            for (long i = trial.get(); !result.isDone(); i = trial.incrementAndGet()) {
                 if (0 == i % 1_000_000) {
-                    Log.info("trial #" + i);
+                    Log.info("trial", i);
+                }
+                if ((++k & STOP_CHECK_MASK) == 0 && token.stop(deadline)) {
+                    break;
                 }
                 if (c.random0()) {
                     // find an answer
                     synchronized (model) {
-                        Log.info("success at trial #" + i);
-                        solved.set(true);
-                        c.copym(model);
+                        if (!result.isDone()) {
+                            Log.info("success at trial", i);
+                            c.copym(model);
+                            result.complete(SolveStatus.SOLVED);
+                        }
                     }
                     break;
                 }
                 // reset
-                model.copym(c);
+                origin.copym(c);
             }
 
             Log.info("done");
-            latch.countDown();
+            SolverStats.get().restarts(k);
+            if (running.decrementAndGet() == 0) {
+                result.complete(token.isCancelled() ? SolveStatus.CANCELLED : SolveStatus.TIMED_OUT);
+            }
         }
     }
 
     private void copym(Model dest) {
-        for (int i = 0; i < row; i++) {
-            System.arraycopy(this.m[i], 0, dest.m[i], 0, this.m[i].length);
+        System.arraycopy(this.m, 0, dest.m, 0, this.m.length);
+        System.arraycopy(this.counts, 0, dest.counts, 0, this.counts.length);
+        dest.filled = this.filled;
+        dest.duplicates = this.duplicates;
+    }
+
+    /**
+     * Overwrite this board with the cells of the other one, both of the same size.
+     */
+    void copyFrom(Model src) {
+        if (src.size != this.size) {
+            throw new IllegalArgumentException("board size " + src.size + ", expected " + this.size);
         }
+        src.copym(this);
     }
 
     public Model modelClone() {
@@ -451,5 +1008,6 @@ public class Model {
         // 7 9 6 | 3 1 8 | 4 5 2
         Log.info(model);
         Log.info("solved:", model.isSolved());
+        Log.info("unique:", model.hasUniqueSolution());
     }
 }
@@ -0,0 +1,106 @@
+package com.github.cloudecho.sudoku;
+
+import java.io.IOException;
+import java.util.concurrent.*;
+
+/**
+ * Bounded reader -> workers -> writer pipeline that keeps the input order.
+ * <p>
+ * The feeding thread submits tasks to the workers and queues their futures, at most {@code queueDepth}
+ * ahead of the writer thread, which hands the results to the sink in submission order.
+ * The first failure of a task or of the sink is kept; the writer then keeps draining the queue so that
+ * the feeder never blocks, {@link #failed()} tells the feeder to stop, and {@link #run} rethrows it.
+ *
+ * @param <T> result of a task
+ */
+final class OrderedPipeline<T> {
+    interface Feeding<T> {
+        void feed(OrderedPipeline<T> pipeline) throws IOException, InterruptedException;
+    }
+
+    interface Sink<T> {
+        void accept(T result) throws IOException;
+    }
+
+    private final ExecutorService workers;
+    private final BlockingQueue<Future<T>> ordered;
+    private final Future<T> end = CompletableFuture.completedFuture(null);
+    private final String writerName;
+    private volatile Exception error;
+
+    OrderedPipeline(ExecutorService workers, int queueDepth, String writerName) {
+        this.workers = workers;
+        this.ordered = new ArrayBlockingQueue<>(queueDepth);
+        this.writerName = writerName;
+    }
+
+    /**
+     * Submit a task, waiting while the queue is full.
+     */
+    void submit(Callable<T> task) throws InterruptedException {
+        ordered.put(workers.submit(task));
+    }
+
+    /**
+     * Return true once a task or the sink has failed, there is no point in feeding more.
+     */
+    boolean failed() {
+        return error != null;
+    }
+
+    /**
+     * Run the feeder on the calling thread and the sink on a writer thread, until both are done.
+     *
+     * @throws IOException      a failure of the feeder, else the first failure of the sink, or of a task wrapped
+     * @throws RuntimeException an unchecked failure of the feeder, else the first one of the sink;
+     *                          a failure of the feeder carries that of the sink as suppressed
+     */
+    void run(Feeding<T> feeding, Sink<T> sink) throws IOException, InterruptedException {
+        final Thread writer = new Thread(() -> drain(sink), writerName);
+        writer.start();
+        try {
+            try {
+                feeding.feed(this);
+            } finally {
+                ordered.put(end);
+                // the sink may still be writing, the caller closes it once we return
+                writer.join();
+            }
+        } catch (InterruptedException e) {
+            writer.interrupt();
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            if (error != null) {
+                e.addSuppressed(error);
+            }
+            throw e;
+        }
+
+        final Exception e = error;
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        } else if (e != null) {
+            throw (RuntimeException) e;
+        }
+    }
+
+    private void drain(Sink<T> sink) {
+        try {
+            for (Future<T> f; (f = ordered.take()) != end; ) {
+                if (error != null) {
+                    // keep draining so that the feeder never blocks
+                    continue;
+                }
+                try {
+                    sink.accept(f.get());
+                } catch (ExecutionException e) {
+                    error = new IOException("task failed", e.getCause());
+                } catch (IOException | RuntimeException e) {
+                    error = e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.github.cloudecho.sudoku;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Races different engines on the same puzzle and keeps the answer of the first one to finish:
+ * the propagation search, the DLX exact cover search and {@value #KEY_PORTFOLIO_RANDOM} propagation
+ * searches trying the candidates in random order, each with its own seed.
+ * A puzzle that is pathological for one strategy is usually easy for another.
+ * <p>
+ * The calling thread runs the propagation search itself and the others run on the {@link SolverPool};
+ * the first engine to solve the puzzle or prove it unsolvable cancels the rest. Engines are handed over with
+ * {@link SolverPool#trySubmit}: whatever the pool's rejection policy, those without a free slot are left out of
+ * the race, and the calling thread never waits for a pool thread, so the race also completes when the pool is
+ * saturated.
+ */
+class PortfolioSolver implements CellSolver {
+    static final String KEY_PORTFOLIO_RANDOM = "PORTFOLIO_RANDOM";
+    static final int DEFAULT_PORTFOLIO_RANDOM = 2;
+
+    final int box;
+    private final int randomEngines;
+    private boolean aborted;
+
+    PortfolioSolver(int box) {
+        this(box, Integer.getInteger(KEY_PORTFOLIO_RANDOM, DEFAULT_PORTFOLIO_RANDOM));
+    }
+
+    PortfolioSolver(int box, int randomEngines) {
+        this.box = box;
+        this.randomEngines = randomEngines;
+    }
+
+    @Override
+    public boolean solve(int[] puzzle, CancellationToken token, long deadline) {
+        final Race race = new Race(puzzle, token, deadline);
+        final SolverPool pool = SolverPool.shared();
+        boolean all = pool.trySubmit(() -> race.run("dlx", Model.dlxSolver(box)));
+        final long seed = ThreadLocalRandom.current().nextLong();
+        for (int i = 0; i < randomEngines && all; i++) {
+            final Random random = new Random(seed + i);
+            all = pool.trySubmit(() -> race.run("random", new Shuffled(Model.propagationSolver(box), random)));
+        }
+        if (!all) {
+            Log.debug("solver pool saturated, racing fewer engines");
+        }
+        race.run("propagation", Model.propagationSolver(box));
+
+        synchronized (race) {
+            aborted = !race.decided;
+            if (race.solution == null) {
+                return false;
+            }
+            System.arraycopy(race.solution, 0, puzzle, 0, puzzle.length);
+            return true;
+        }
+    }
+
+    @Override
+    public boolean aborted() {
+        return aborted;
+    }
+
+    private static final class Race {
+        private final int[] puzzle;
+        // cancelled by the winner, or with the caller's token
+        private final CancellationToken losers;
+        private final long deadline;
+
+        // guarded by this
+        private boolean decided;
+        private int[] solution;
+
+        Race(int[] puzzle, CancellationToken token, long deadline) {
+            this.puzzle = puzzle.clone();
+            this.losers = new CancellationToken(token);
+            this.deadline = deadline;
+        }
+
+        void run(String engine, CellSolver solver) {
+            if (losers.stop(deadline)) {
+                return;
+            }
+            final int[] cells = puzzle.clone();
+            final boolean solved = solver.solve(cells, losers, deadline);
+            if (solver.aborted()) {
+                return;
+            }
+            synchronized (this) {
+                if (decided) {
+                    return;
+                }
+                decided = true;
+                solution = solved ? cells : null;
+            }
+            losers.cancel();
+            Log.debug("portfolio won by", engine);
+        }
+    }
+
+    /**
+     * The propagation search trying the candidates in random order.
+     */
+    private static final class Shuffled implements CellSolver {
+        private final PropagationSolver solver;
+        private final Random random;
+
+        Shuffled(PropagationSolver solver, Random random) {
+            this.solver = solver;
+            this.random = random;
+        }
+
+        @Override
+        public boolean solve(int[] puzzle, CancellationToken token, long deadline) {
+            return solver.solve(puzzle, random, token, deadline);
+        }
+
+        @Override
+        public boolean aborted() {
+            return solver.aborted();
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package com.github.cloudecho.sudoku;
+
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * Deterministic solver based on row/column/box candidate bitmasks,
+ * naked and hidden singles propagation and most-constrained-cell backtracking.
+ * <p>
+ * All working state lives in preallocated arrays, so an instance can be reused
+ * for any number of puzzles without allocating. Instances are not thread-safe.
+ * <p>
+ * Cells are passed as {@code int[]} in row-major order, {@code 0} for an empty cell,
+ * otherwise a digit in {@code 1..size}.
+ */
+class PropagationSolver implements CellSolver {
+    // poll the cancellation token every 1024 nodes
+    private static final int STOP_CHECK_MASK = 1023;
+
+    final int box;
+    final int size;
+    final int cells;
+    private final int all;
+
+    private final int[] rowOf;
+    private final int[] colOf;
+    private final int[] boxOf;
+    private final int[][] units;
+
+    private final int[] grid;
+    private final int[] rowMask;
+    private final int[] colMask;
+    private final int[] boxMask;
+    private final int[] trail;
+    private int trailLen;
+
+    private int[] solution;
+    private long count;
+    private long limit;
+    // receives a copy of every solution, see enumerate()
+    private Consumer<int[]> sink;
+
+    // randomized search, see fill()
+    private Random random;
+    private long nodeLimit = Long.MAX_VALUE;
+
+    // counted per run, then added to the SolverStats
+    private long nodes;
+    private long backtracks;
+    private long propagations;
+
+    private CancellationToken token = CancellationToken.NONE;
+    private long deadline = CancellationToken.NO_DEADLINE;
+    private boolean aborted;
+
+    PropagationSolver(int box) {
+        this.box = box;
+        this.size = box * box;
+        this.cells = size * size;
+        this.all = (1 << size) - 1;
+
+        final Layout layout = Layout.of(box);
+        this.rowOf = layout.rowOf;
+        this.colOf = layout.colOf;
+        this.boxOf = layout.boxOf;
+        this.units = layout.units;
+
+        this.grid = new int[cells];
+        this.rowMask = new int[size];
+        this.colMask = new int[size];
+        this.boxMask = new int[size];
+        this.trail = new int[cells];
+    }
+
+    /**
+     * Solve the puzzle in place.
+     *
+     * @return false if the puzzle has no solution, the cells are then left untouched
+     */
+    boolean solve(int[] puzzle) {
+        return solve(puzzle, CancellationToken.NONE, CancellationToken.NO_DEADLINE);
+    }
+
+    @Override
+    public boolean solve(int[] puzzle, CancellationToken token, long deadline) {
+        if (!load(puzzle)) {
+            return false;
+        }
+        this.solution = puzzle;
+        this.count = 0;
+        this.limit = 1;
+        this.token = token;
+        this.deadline = deadline;
+        try {
+            search();
+        } finally {
+            this.solution = null;
+            this.token = CancellationToken.NONE;
+            this.deadline = CancellationToken.NO_DEADLINE;
+            flushStats();
+        }
+        return count > 0;
+    }
+
+    /**
+     * Solve the puzzle in place like {@link #solve(int[], CancellationToken, long)},
+     * trying the candidates of each cell in random order.
+     */
+    boolean solve(int[] puzzle, Random random, CancellationToken token, long deadline) {
+        this.random = random;
+        try {
+            return solve(puzzle, token, deadline);
+        } finally {
+            this.random = null;
+        }
+    }
+
+    @Override
+    public boolean aborted() {
+        return aborted;
+    }
+
+    /**
+     * Count the solutions of the puzzle, stopping as soon as {@code limit} solutions are found.
+     * The cells are left untouched.
+     */
+    int countSolutions(int[] puzzle, int limit) {
+        return countSolutions(puzzle, limit, Long.MAX_VALUE);
+    }
+
+    /**
+     * Count the solutions like {@link #countSolutions(int[], int)}, giving up after visiting
+     * {@code nodeLimit} search nodes, see {@link #aborted()}.
+     */
+    int countSolutions(int[] puzzle, int limit, long nodeLimit) {
+        if (!load(puzzle)) {
+            return 0;
+        }
+        this.solution = null;
+        this.count = 0;
+        this.limit = limit;
+        this.nodeLimit = nodeLimit;
+        try {
+            search();
+        } finally {
+            this.nodeLimit = Long.MAX_VALUE;
+            flushStats();
+        }
+        return (int) count;
+    }
+
+    /**
+     * Count the solutions like {@link #countSolutions(int[], int)}, giving up once the token is cancelled
+     * or the deadline has passed, see {@link #aborted()}.
+     */
+    int countSolutions(int[] puzzle, int limit, CancellationToken token, long deadline) {
+        if (!load(puzzle)) {
+            return 0;
+        }
+        this.solution = null;
+        this.count = 0;
+        this.limit = limit;
+        this.token = token;
+        this.deadline = deadline;
+        try {
+            search();
+        } finally {
+            this.token = CancellationToken.NONE;
+            this.deadline = CancellationToken.NO_DEADLINE;
+            flushStats();
+        }
+        return (int) count;
+    }
+
+    /**
+     * Find every solution of the puzzle, passing a copy of each to {@code sink} unless it is null.
+     * The cells are left untouched.
+     *
+     * @return the number of solutions found, all of them unless {@link #aborted()}
+     */
+    long enumerate(int[] puzzle, Consumer<int[]> sink, CancellationToken token, long deadline) {
+        if (!load(puzzle)) {
+            return 0;
+        }
+        this.solution = null;
+        this.count = 0;
+        this.limit = Long.MAX_VALUE;
+        this.sink = sink;
+        this.token = token;
+        this.deadline = deadline;
+        try {
+            search();
+        } finally {
+            this.sink = null;
+            this.token = CancellationToken.NONE;
+            this.deadline = CancellationToken.NO_DEADLINE;
+            flushStats();
+        }
+        return count;
+    }
+
+    /**
+     * Propagate the puzzle and branch on its most constrained cell: return the propagated grid
+     * with that cell set to each of its candidates in turn, none if the puzzle has no solution,
+     * or null if propagation alone solves it, the solution is then written to the cells.
+     */
+    int[][] branch(int[] puzzle) {
+        try {
+            if (!load(puzzle) || !propagate()) {
+                return new int[0][];
+            }
+            final int best = mostConstrained();
+            if (best < 0) {
+                System.arraycopy(grid, 0, puzzle, 0, cells);
+                return null;
+            }
+            int cand = candidates(best);
+            final int[][] branches = new int[Integer.bitCount(cand)][];
+            for (int k = 0; cand != 0; k++) {
+                final int bit = cand & -cand;
+                cand &= ~bit;
+                branches[k] = grid.clone();
+                branches[k][best] = Integer.numberOfTrailingZeros(bit) + 1;
+            }
+            return branches;
+        } finally {
+            flushStats();
+        }
+    }
+
+    /**
+     * Complete the grid in place with a random solution, trying candidates in random order.
+     *
+     * @param nodeLimit give up after visiting this many search nodes
+     * @return false if the grid has no solution or the node limit was hit, the cells are then left untouched
+     */
+    boolean fill(int[] grid, Random random, long nodeLimit) {
+        if (!load(grid)) {
+            return false;
+        }
+        this.solution = grid;
+        this.count = 0;
+        this.limit = 1;
+        this.random = random;
+        this.nodeLimit = nodeLimit;
+        try {
+            search();
+        } finally {
+            this.solution = null;
+            this.random = null;
+            this.nodeLimit = Long.MAX_VALUE;
+            flushStats();
+        }
+        return count > 0;
+    }
+
+    private boolean load(int[] puzzle) {
+        aborted = false;
+        nodes = 0;
+        backtracks = 0;
+        propagations = 0;
+        for (int i = 0; i < size; i++) {
+            rowMask[i] = 0;
+            colMask[i] = 0;
+            boxMask[i] = 0;
+        }
+        trailLen = 0;
+
+        for (int i = 0; i < cells; i++) {
+            grid[i] = 0;
+        }
+        for (int i = 0; i < cells; i++) {
+            final int n = puzzle[i];
+            if (n == 0) {
+                continue;
+            }
+            final int bit = 1 << (n - 1);
+            if ((candidates(i) & bit) == 0) {
+                // conflicting givens
+                return false;
+            }
+            place(i, bit);
+        }
+        return true;
+    }
+
+    /**
+     * Return true if the search should stop.
+     */
+    private boolean search() {
+        if (++nodes > nodeLimit || (nodes & STOP_CHECK_MASK) == 0 && token.stop(deadline)) {
+            aborted = true;
+            return true;
+        }
+        if (!propagate()) {
+            return false;
+        }
+
+        final int best = mostConstrained();
+        if (best < 0) {
+            // find an answer
+            if (count++ == 0 && solution != null) {
+                System.arraycopy(grid, 0, solution, 0, cells);
+            }
+            if (sink != null) {
+                sink.accept(grid.clone());
+            }
+            return count >= limit;
+        }
+
+        for (int cand = candidates(best); cand != 0; ) {
+            final int bit = random == null ? cand & -cand : randomBit(cand);
+            cand &= ~bit;
+            final int mark = trailLen;
+            place(best, bit);
+            final boolean stop = search();
+            undo(mark);
+            if (stop) {
+                return true;
+            }
+            backtracks++;
+        }
+        return false;
+    }
+
+    /**
+     * Return the empty cell with the fewest candidates, -1 if the grid is full.
+     */
+    private int mostConstrained() {
+        int best = -1;
+        int bestNum = size + 1;
+        for (int i = 0; i < cells; i++) {
+            if (grid[i] != 0) {
+                continue;
+            }
+            final int n = Integer.bitCount(candidates(i));
+            if (n < bestNum) {
+                best = i;
+                bestNum = n;
+                if (n <= 2) {
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    private void flushStats() {
+        SolverStats.get().search(nodes, backtracks, propagations);
+    }
+
+    /**
+     * Apply naked and hidden singles until nothing changes.
+     * Return false on contradiction.
+     */
+    private boolean propagate() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            // naked singles
+            for (int i = 0; i < cells; i++) {
+                if (grid[i] != 0) {
+                    continue;
+                }
+                final int cand = candidates(i);
+                if (cand == 0) {
+                    return false;
+                }
+                if ((cand & (cand - 1)) == 0) {
+                    place(i, cand);
+                    propagations++;
+                    changed = true;
+                }
+            }
+
+            // hidden singles
+            for (int[] unit : units) {
+                int once = 0;
+                int twice = 0;
+                int placed = 0;
+                for (int i : unit) {
+                    if (grid[i] != 0) {
+                        placed |= 1 << (grid[i] - 1);
+                        continue;
+                    }
+                    final int cand = candidates(i);
+                    twice |= once & cand;
+                    once |= cand;
+                }
+                if ((once | placed) != all) {
+                    // some digit has no place left in this unit
+                    return false;
+                }
+                final int hidden = once & ~twice;
+                if (hidden == 0) {
+                    continue;
+                }
+                for (int i : unit) {
+                    if (grid[i] != 0) {
+                        continue;
+                    }
+                    final int h = candidates(i) & hidden;
+                    if (h == 0) {
+                        continue;
+                    }
+                    if ((h & (h - 1)) != 0) {
+                        // two digits can only go to this cell
+                        return false;
+                    }
+                    place(i, h);
+                    propagations++;
+                    changed = true;
+                }
+            }
+        }
+        return true;
+    }
+
+    private int randomBit(int cand) {
+        for (int k = random.nextInt(Integer.bitCount(cand)); k > 0; k--) {
+            cand &= cand - 1;
+        }
+        return cand & -cand;
+    }
+
+    private int candidates(int i) {
+        return all & ~(rowMask[rowOf[i]] | colMask[colOf[i]] | boxMask[boxOf[i]]);
+    }
+
+    private void place(int i, int bit) {
+        grid[i] = Integer.numberOfTrailingZeros(bit) + 1;
+        rowMask[rowOf[i]] |= bit;
+        colMask[colOf[i]] |= bit;
+        boxMask[boxOf[i]] |= bit;
+        trail[trailLen++] = i;
+    }
+
+    private void undo(int mark) {
+        while (trailLen > mark) {
+            final int i = trail[--trailLen];
+            final int bit = ~(1 << (grid[i] - 1));
+            grid[i] = 0;
+            rowMask[rowOf[i]] &= bit;
+            colMask[colOf[i]] &= bit;
+            boxMask[boxOf[i]] &= bit;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.github.cloudecho.sudoku;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Fixed-size binary record of a board: a bitmask of the given cells followed by the cell values,
+ * packed {@link #bits} per cell, least significant bits first.
+ * <p>
+ * A cell value is its digit, {@code 0} for an empty cell. A record holds a puzzle alone (givens only),
+ * a puzzle with its solution (every cell filled, the givens marked), or a full grid. A 9x9 record
+ * takes 52 bytes: 11 for the mask and 41 for the cells.
+ * Instances are immutable and shared, see {@link #of(int)}.
+ */
+final class PuzzleCodec {
+    private static final ConcurrentMap<Integer, PuzzleCodec> CODECS = new ConcurrentHashMap<>();
+
+    final int box;
+    final int size;
+    final int cells;
+    /**
+     * Bits per cell, enough for the values {@code 0..size}.
+     */
+    final int bits;
+    final int maskBytes;
+    final int recordBytes;
+
+    private PuzzleCodec(int box) {
+        this.box = box;
+        this.size = box * box;
+        this.cells = size * size;
+        this.bits = 32 - Integer.numberOfLeadingZeros(size);
+        this.maskBytes = (cells + 7) / 8;
+        this.recordBytes = maskBytes + (cells * bits + 7) / 8;
+    }
+
+    static PuzzleCodec of(int box) {
+        return CODECS.computeIfAbsent(box, PuzzleCodec::new);
+    }
+
+    /**
+     * Write the record at the buffer's position, advancing it.
+     *
+     * @param puzzle   the givens, {@code 0} for an empty cell
+     * @param solution the digits of the other cells, or null to store the puzzle alone
+     */
+    void encode(int[] puzzle, int[] solution, ByteBuffer out) {
+        encode(puzzle, solution, out, out.position());
+        out.position(out.position() + recordBytes);
+    }
+
+    /**
+     * Write the record at the given offset, the buffer's position is left untouched.
+     */
+    void encode(int[] puzzle, int[] solution, ByteBuffer out, int offset) {
+        if (out.limit() - offset < recordBytes) {
+            throw new IllegalArgumentException("no room for a record of " + recordBytes + " bytes at " + offset);
+        }
+        int p = offset;
+        for (int i = 0; i < cells; i += 8) {
+            int b = 0;
+            for (int k = 0; k < 8 && i + k < cells; k++) {
+                if (puzzle[i + k] != 0) {
+                    b |= 1 << k;
+                }
+            }
+            out.put(p++, (byte) b);
+        }
+
+        long acc = 0;
+        int n = 0;
+        for (int i = 0; i < cells; i++) {
+            final int v = puzzle[i] != 0 || solution == null ? puzzle[i] : solution[i];
+            if (v < 0 || v > size) {
+                throw new IllegalArgumentException("digit out of range at cell " + i + ": " + v);
+            }
+            acc |= (long) v << n;
+            n += bits;
+            while (n >= 8) {
+                out.put(p++, (byte) acc);
+                acc >>>= 8;
+                n -= 8;
+            }
+        }
+        if (n > 0) {
+            out.put(p, (byte) acc);
+        }
+    }
+
+    /**
+     * Read the record at the buffer's position, advancing it.
+     *
+     * @param puzzle   receives the givens, or null
+     * @param solution receives every stored digit, or null
+     */
+    void decode(ByteBuffer in, int[] puzzle, int[] solution) {
+        decode(in, in.position(), puzzle, solution);
+        in.position(in.position() + recordBytes);
+    }
+
+    /**
+     * Read the record at the given offset, the buffer's position is left untouched.
+     */
+    void decode(ByteBuffer in, int offset, int[] puzzle, int[] solution) {
+        final int mask = (1 << bits) - 1;
+        int p = offset + maskBytes;
+        long acc = 0;
+        int n = 0;
+        for (int i = 0; i < cells; i++) {
+            while (n < bits) {
+                acc |= (in.get(p++) & 0xffL) << n;
+                n += 8;
+            }
+            final int v = (int) acc & mask;
+            acc >>>= bits;
+            n -= bits;
+
+            if (v > size) {
+                throw new IllegalArgumentException("digit out of range at cell " + i + ": " + v);
+            }
+            if (solution != null) {
+                solution[i] = v;
+            }
+            if (puzzle != null) {
+                final boolean given = (in.get(offset + (i >>> 3)) >>> (i & 7) & 1) != 0;
+                puzzle[i] = given ? v : 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.github.cloudecho.sudoku;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+
+/**
+ * Set of puzzles up to equivalence, for deduplicating a stream of puzzles.
+ * <p>
+ * Puzzles are keyed by their minlex form (see {@link Canonicalizer}), packed with {@link PuzzleCodec}.
+ * The keys live off-heap in an open-addressing table with linear probing: each slot holds
+ * a 64-bit hash, {@code 0} for a free slot, followed by the packed form. Equal hashes are confirmed
+ * by comparing the packed forms, so distinct puzzles are never merged.
+ * Instances are not thread-safe.
+ *
+ * <pre>
+ * java -cp sudoku.jar com.github.cloudecho.sudoku.PuzzleIndex [input|-] [output|-]
+ * </pre>
+ * copies the puzzle lines of the input whose equivalent was not seen before.
+ */
+class PuzzleIndex {
+    static final String KEY_DEDUPE_THREADS = "DEDUPE_THREADS";
+    static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static final String STDIO = "-";
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int CHUNK = 256;
+    private static final int HASH_BYTES = 8;
+    private static final int MAX_LOAD_PERCENT = 60;
+
+    private final PuzzleCodec codec;
+    private final int slotBytes;
+    private final ByteBuffer key;
+
+    private ByteBuffer table;
+    private int capacity;
+    private int size;
+
+    PuzzleIndex(int box) {
+        this(box, DEFAULT_CAPACITY);
+    }
+
+    PuzzleIndex(int box, int expected) {
+        this.codec = PuzzleCodec.of(box);
+        this.slotBytes = HASH_BYTES + codec.recordBytes;
+        this.key = ByteBuffer.allocate(codec.recordBytes);
+        int c = 16;
+        while (c < (long) expected * 100 / MAX_LOAD_PERCENT) {
+            c <<= 1;
+        }
+        allocate(c);
+    }
+
+    private void allocate(int capacity) {
+        if ((long) capacity * slotBytes > Integer.MAX_VALUE) {
+            throw new IllegalStateException("puzzle index full at " + size + " puzzles");
+        }
+        this.capacity = capacity;
+        this.table = ByteBuffer.allocateDirect(capacity * slotBytes);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Add the minlex form of a puzzle; return false if it was already there.
+     */
+    boolean add(Canonicalizer.Form form) {
+        return add(form.cells);
+    }
+
+    /**
+     * Add a puzzle already in minlex form; return false if it was already there.
+     */
+    boolean add(int[] canonical) {
+        final long hash = hash(canonical);
+        codec.encode(canonical, null, key, 0);
+        final int slot = find(hash, key);
+        if (table.getLong(slot * slotBytes) != 0) {
+            return false;
+        }
+        put(slot, hash, key);
+        if (++size * 100L > (long) capacity * MAX_LOAD_PERCENT) {
+            grow();
+        }
+        return true;
+    }
+
+    boolean contains(int[] canonical) {
+        final long hash = hash(canonical);
+        codec.encode(canonical, null, key, 0);
+        return table.getLong(find(hash, key) * slotBytes) != 0;
+    }
+
+    /**
+     * Return the slot holding the key, or the free slot where it belongs.
+     */
+    private int find(long hash, ByteBuffer key) {
+        final int mask = capacity - 1;
+        for (int slot = (int) hash & mask; ; slot = slot + 1 & mask) {
+            final int p = slot * slotBytes;
+            final long h = table.getLong(p);
+            if (h == 0 || h == hash && sameKey(p + HASH_BYTES, key)) {
+                return slot;
+            }
+        }
+    }
+
+    private boolean sameKey(int p, ByteBuffer key) {
+        for (int i = 0; i < codec.recordBytes; i++) {
+            if (table.get(p + i) != key.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void put(int slot, long hash, ByteBuffer key) {
+        final int p = slot * slotBytes;
+        table.putLong(p, hash);
+        for (int i = 0; i < codec.recordBytes; i++) {
+            table.put(p + HASH_BYTES + i, key.get(i));
+        }
+    }
+
+    private void grow() {
+        final ByteBuffer old = table;
+        final int oldCapacity = capacity;
+        allocate(capacity << 1);
+        final ByteBuffer k = ByteBuffer.allocate(codec.recordBytes);
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            final int p = slot * slotBytes;
+            final long hash = old.getLong(p);
+            if (hash == 0) {
+                continue;
+            }
+            for (int i = 0; i < codec.recordBytes; i++) {
+                k.put(i, old.get(p + HASH_BYTES + i));
+            }
+            put(find(hash, k), hash, k);
+        }
+    }
+
+    // FNV-1a over the cells, then the murmur3 finalizer; never 0, which marks a free slot
+    private static long hash(int[] cells) {
+        long h = 0xcbf29ce484222325L;
+        for (int v : cells) {
+            h = (h ^ v) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h != 0 ? h : 1;
+    }
+
+    /**
+     * Copy the lines of {@code in} holding a puzzle not equivalent to an earlier one to {@code out}.
+     * The minlex forms are computed by the workers, chunk by chunk, and added to the index in input order.
+     * A failure, e.g. the index running full, stops the reading and is rethrown.
+     *
+     * @return the number of puzzles dropped as duplicates
+     */
+    long dedupe(BufferedReader in, Writer out, ExecutorService workers, int queueDepth)
+            throws IOException, InterruptedException {
+        final long[] dropped = new long[1];
+        new OrderedPipeline<Object[]>(workers, queueDepth, "sudoku-dedupe-writer").run(pipeline -> {
+            String[] lines = new String[CHUNK];
+            int n = 0;
+            for (String line; (line = in.readLine()) != null && !pipeline.failed(); ) {
+                lines[n++] = line;
+                if (n == CHUNK) {
+                    pipeline.submit(canonicalizing(lines, n));
+                    lines = new String[CHUNK];
+                    n = 0;
+                }
+            }
+            if (n > 0) {
+                pipeline.submit(canonicalizing(lines, n));
+            }
+        }, chunk -> {
+            for (int i = 0; i < chunk.length; i += 2) {
+                final int[] form = (int[]) chunk[i + 1];
+                if (form != null && !add(form)) {
+                    dropped[0]++;
+                } else {
+                    out.write((String) chunk[i]);
+                    out.write('\n');
+                }
+            }
+        });
+        return dropped[0];
+    }
+
+    /**
+     * Pair each line with its minlex form, null for lines that are not puzzles: kept as they are.
+     */
+    private static Callable<Object[]> canonicalizing(String[] lines, int n) {
+        return () -> {
+            final Object[] chunk = new Object[2 * n];
+            final int[] cells = new int[81];
+            for (int i = 0; i < n; i++) {
+                chunk[2 * i] = lines[i];
+                if (!lines[i].startsWith("#") && Batch.parse(lines[i], cells)) {
+                    chunk[2 * i + 1] = Model.canonicalizer(3).canonicalize(cells).cells;
+                }
+            }
+            return chunk;
+        };
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final String input = args.length > 0 ? args[0] : STDIO;
+        final String output = args.length > 1 ? args[1] : STDIO;
+        final int threads = Integer.getInteger(KEY_DEDUPE_THREADS, Runtime.getRuntime().availableProcessors());
+        final ExecutorService workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "sudoku-dedupe");
+            t.setDaemon(true);
+            return t;
+        });
+
+        final long t0 = System.nanoTime();
+        final PuzzleIndex index = new PuzzleIndex(3);
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(STDIO.equals(input) ?
+                System.in : new FileInputStream(input), StandardCharsets.US_ASCII), BUFFER_SIZE);
+             Writer out = new BufferedWriter(new OutputStreamWriter(STDIO.equals(output) ?
+                     System.out : new FileOutputStream(output), StandardCharsets.US_ASCII), BUFFER_SIZE)) {
+            final long dropped = index.dedupe(in, out, workers, 2 * threads);
+            Log.info("unique:", index.size(), "duplicates:", dropped);
+        } finally {
+            workers.shutdown();
+        }
+        Log.info("elapsed ms:", (System.nanoTime() - t0) / 1_000_000);
+    }
+}
@@ -0,0 +1,201 @@
+package com.github.cloudecho.sudoku;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Bounded per-difficulty stock of generated puzzles, so that a new game does not wait for generation.
+ * <p>
+ * A background thread watches the stock of each level: once it drops to the low watermark,
+ * generation tasks are submitted to the {@link SolverPool} until it is back to the high watermark.
+ * Each level is graded to a difficulty of the {@link Grader}, see {@link #generate(int, float, int)}.
+ */
+class PuzzlePool {
+    static final String KEY_PUZZLE_POOL_LOW = "PUZZLE_POOL_LOW";
+    static final String KEY_PUZZLE_POOL_HIGH = "PUZZLE_POOL_HIGH";
+    static final int DEFAULT_PUZZLE_POOL_LOW = 2;
+    static final int DEFAULT_PUZZLE_POOL_HIGH = 8;
+    static final String KEY_PUZZLE_ATTEMPTS = "PUZZLE_ATTEMPTS";
+    static final int DEFAULT_PUZZLE_ATTEMPTS = 20;
+
+    // recheck the stock at least this often, e.g. after the solver pool had no free slot
+    private static final long REFILL_INTERVAL_MILLIS = 1000;
+
+    private final int box;
+    private final float[] levels;
+    private final int low;
+    private final int high;
+
+    private final List<BlockingQueue<Model>> stock;
+    // generation tasks submitted and not yet finished, per level
+    private final int[] generating;
+    // true from the low watermark until the high watermark is reached again, per level
+    private final boolean[] refilling;
+
+    private final Object lock = new Object();
+    private final Thread refiller;
+    private volatile boolean closed;
+
+    PuzzlePool(int box, float... levels) {
+        this(box, Integer.getInteger(KEY_PUZZLE_POOL_LOW, DEFAULT_PUZZLE_POOL_LOW),
+                Integer.getInteger(KEY_PUZZLE_POOL_HIGH, DEFAULT_PUZZLE_POOL_HIGH), levels);
+    }
+
+    PuzzlePool(int box, int low, int high, float... levels) {
+        if (low < 0 || high <= low) {
+            throw new IllegalArgumentException("bad watermarks, low " + low + ", high " + high);
+        }
+        this.box = box;
+        this.levels = levels.clone();
+        this.low = low;
+        this.high = high;
+        this.stock = new ArrayList<>(levels.length);
+        for (int i = 0; i < levels.length; i++) {
+            stock.add(new ArrayBlockingQueue<>(high));
+        }
+        this.generating = new int[levels.length];
+        this.refilling = new boolean[levels.length];
+        Arrays.fill(refilling, true);
+
+        this.refiller = new Thread(this::refill, "sudoku-puzzle-pool");
+        this.refiller.setDaemon(true);
+    }
+
+    void start() {
+        refiller.start();
+    }
+
+    void close() {
+        closed = true;
+        refiller.interrupt();
+    }
+
+    /**
+     * Take a puzzle of the given level from the stock, or generate it on the calling thread
+     * if the stock has run dry.
+     */
+    Model take(float level) {
+        final Model puzzle = poll(level);
+        if (puzzle != null) {
+            return puzzle;
+        }
+        Log.debug("no puzzle in stock, level", level);
+        return generate(level);
+    }
+
+    /**
+     * Take a puzzle of the given level from the stock, null if it has run dry.
+     */
+    Model poll(float level) {
+        final int i = indexOf(level);
+        if (i < 0) {
+            return null;
+        }
+        final Model puzzle = stock.get(i).poll();
+        wakeUp();
+        return puzzle;
+    }
+
+    /**
+     * Number of puzzles in stock for the given level.
+     */
+    int size(float level) {
+        final int i = indexOf(level);
+        return i < 0 ? 0 : stock.get(i).size();
+    }
+
+    private int indexOf(float level) {
+        for (int i = 0; i < levels.length; i++) {
+            if (levels[i] == level) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Model generate(float level) {
+        return generate(box, level, Integer.getInteger(KEY_PUZZLE_ATTEMPTS, DEFAULT_PUZZLE_ATTEMPTS));
+    }
+
+    /**
+     * Generate a puzzle with a unique solution whose grade matches the difficulty of the level,
+     * hiding at least the share of digits given by the level. Up to {@code attempts} grids are tried,
+     * then the puzzle closest to the difficulty is taken.
+     */
+    static Model generate(int box, float level, int attempts) {
+        final int difficulty = Grader.difficultyOf(level);
+        Model best = null;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int k = 0; k < Math.max(attempts, 1); k++) {
+            final Model puzzle = new Model(box);
+            puzzle.random();
+            final int distance = Math.abs(puzzle.hideDigits(level, difficulty).difficulty() - difficulty);
+            if (distance == 0) {
+                return puzzle;
+            }
+            if (distance < bestDistance) {
+                best = puzzle;
+                bestDistance = distance;
+            }
+        }
+        Log.debug("no puzzle graded at difficulty", difficulty);
+        return best;
+    }
+
+    private void wakeUp() {
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+    }
+
+    private void refill() {
+        try {
+            while (!closed) {
+                synchronized (lock) {
+                    for (int i = 0; i < levels.length; i++) {
+                        submit(i);
+                    }
+                    lock.wait(REFILL_INTERVAL_MILLIS);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // holding the lock
+    private void submit(int i) {
+        if (stock.get(i).size() <= low) {
+            refilling[i] = true;
+        }
+        while (refilling[i] && stock.get(i).size() + generating[i] < high) {
+            final float level = levels[i];
+            // never runs the task here nor waits for a slot, whatever the rejection policy:
+            // the tasks need the lock to finish
+            if (!SolverPool.shared().trySubmit(() -> generateInto(i, level))) {
+                Log.debug("solver pool saturated, puzzle generation postponed");
+                return;
+            }
+            generating[i]++;
+        }
+        if (stock.get(i).size() >= high) {
+            refilling[i] = false;
+        }
+    }
+
+    private void generateInto(int i, float level) {
+        try {
+            if (!closed) {
+                stock.get(i).offer(generate(level));
+            }
+        } finally {
+            synchronized (lock) {
+                generating[i]--;
+                lock.notifyAll();
+            }
+        }
+    }
+}
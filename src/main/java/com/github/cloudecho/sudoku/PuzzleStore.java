@@ -0,0 +1,175 @@
+package com.github.cloudecho.sudoku;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * File of {@link PuzzleCodec} records, addressed by puzzle id.
+ * <p>
+ * A 16-byte header (magic, version, box size, record count) is followed by the records in id order.
+ * Records have a fixed size, so the record of an id is found by its offset alone; readers map the file
+ * and decode straight from the mapped bytes.
+ */
+final class PuzzleStore {
+    static final int MAGIC = 0x53444b50; // "SDKP"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+
+    private static final int COUNT_OFFSET = 8;
+
+    private PuzzleStore() {
+    }
+
+    /**
+     * Appends records to a new file, the count in the header is written on close.
+     */
+    static final class Writer implements Closeable {
+        private static final int BATCH_BYTES = 64 * 1024;
+
+        private final FileChannel channel;
+        private final PuzzleCodec codec;
+        private final ByteBuffer buf;
+        private long count;
+
+        Writer(Path path, int box) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.codec = PuzzleCodec.of(box);
+            this.buf = ByteBuffer.allocateDirect(Math.max(BATCH_BYTES / codec.recordBytes, 1) * codec.recordBytes);
+            final ByteBuffer header = header(box, 0);
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+        }
+
+        /**
+         * Append the puzzle, with its solution unless null, and return its id.
+         */
+        long append(int[] puzzle, int[] solution) throws IOException {
+            if (buf.remaining() < codec.recordBytes) {
+                flush();
+            }
+            codec.encode(puzzle, solution, buf);
+            return count++;
+        }
+
+        private void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            buf.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+                final ByteBuffer header = header(codec.box, count);
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+            } finally {
+                channel.close();
+            }
+        }
+
+        private static ByteBuffer header(int box, long count) {
+            final ByteBuffer b = ByteBuffer.allocate(HEADER_BYTES);
+            b.putInt(MAGIC).put((byte) VERSION).put((byte) box).putShort((short) 0).putLong(count);
+            b.flip();
+            return b;
+        }
+    }
+
+    /**
+     * Random access to the records of a file. Thread-safe: reads never move the buffers' positions.
+     */
+    static final class Reader implements Closeable {
+        private final FileChannel channel;
+        private final PuzzleCodec codec;
+        private final long count;
+        // the records are mapped in segments, each under 2 GiB and holding whole records
+        private final int perSegment;
+        private final MappedByteBuffer[] segments;
+
+        Reader(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                while (header.hasRemaining()) {
+                    if (channel.read(header) < 0) {
+                        break;
+                    }
+                }
+                header.flip();
+                if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+                    throw new IOException("not a puzzle store: " + path);
+                }
+                final int version = header.get();
+                if (version != VERSION) {
+                    throw new IOException("unsupported puzzle store version " + version + ": " + path);
+                }
+                final int box = header.get();
+                if (box < Model.MIN_BOX || box > Model.MAX_BOX) {
+                    throw new IOException("not a puzzle store, box size " + box + ": " + path);
+                }
+                this.codec = PuzzleCodec.of(box);
+                header.getShort();
+                this.count = header.getLong();
+                if (count < 0) {
+                    throw new IOException("not a puzzle store, count " + count + ": " + path);
+                }
+                // divide rather than multiply, a corrupt count would overflow the product
+                if (count > (channel.size() - HEADER_BYTES) / codec.recordBytes) {
+                    throw new IOException("truncated puzzle store: " + path);
+                }
+
+                this.perSegment = Integer.MAX_VALUE / codec.recordBytes;
+                this.segments = new MappedByteBuffer[(int) ((count + perSegment - 1) / perSegment)];
+                for (int s = 0; s < segments.length; s++) {
+                    final long first = (long) s * perSegment;
+                    final long n = Math.min(perSegment, count - first);
+                    segments[s] = channel.map(FileChannel.MapMode.READ_ONLY,
+                            HEADER_BYTES + first * codec.recordBytes, n * codec.recordBytes);
+                }
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        int box() {
+            return codec.box;
+        }
+
+        long count() {
+            return count;
+        }
+
+        /**
+         * Decode the record of the id.
+         *
+         * @param puzzle   receives the givens, or null
+         * @param solution receives every stored digit, or null
+         */
+        void read(long id, int[] puzzle, int[] solution) {
+            if (id < 0 || id >= count) {
+                throw new IndexOutOfBoundsException("puzzle id " + id + ", count " + count);
+            }
+            final int s = (int) (id / perSegment);
+            final int offset = (int) (id % perSegment) * codec.recordBytes;
+            codec.decode(segments[s], offset, puzzle, solution);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,682 @@
+package com.github.cloudecho.sudoku;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Conflict-driven clause learning (CDCL) SAT solver over a CNF encoding of the puzzle.
+ * <p>
+ * There is one variable per empty cell and digit still allowed by the givens. Every cell takes at least one
+ * and at most one digit, and every digit missing from a row, column or box goes to at least one and at most
+ * one of its cells; the at-most-one constraints are pairwise binary clauses.
+ * <p>
+ * The search assigns the most active variable (VSIDS) with its saved phase and propagates with two watched
+ * literals per clause, binary clauses being kept as implication lists. A conflict is analysed down to
+ * its first unique implication point, the learnt clause is added and the search jumps back.
+ * Restarts follow the Luby sequence, and the least active half of the learnt clauses is dropped
+ * on a restart once there are too many of them.
+ * <p>
+ * Instances are not thread-safe; the clauses are built anew for every puzzle.
+ * Cells are passed as {@code int[]} in row-major order, {@code 0} for an empty cell,
+ * otherwise a digit in {@code 1..size}.
+ */
+class SatSolver implements CellSolver {
+    // poll the cancellation token every 256 conflicts or decisions
+    private static final int STOP_CHECK_MASK = 255;
+    private static final int RESTART_CONFLICTS = 100;
+    private static final double VAR_DECAY = 0.95;
+    private static final double CLAUSE_DECAY = 0.999;
+    private static final double RESCALE_LIMIT = 1e100;
+    private static final int MIN_LEARNTS = 2000;
+    private static final double LEARNTS_GROWTH = 1.1;
+
+    private static final byte TRUE = 1;
+    private static final byte FALSE = -1;
+    private static final int NO_REASON = -1;
+
+    final int box;
+    final int size;
+    final int cells;
+    private final int all;
+    private final Layout layout;
+
+    // variables: var = digit choice of a cell, literal = 2 * var, or 2 * var + 1 for its negation
+    private int vars;
+    private int[] varOf;
+    private int[] cellOf;
+    private int[] digitOf;
+
+    private byte[] value;
+    private int[] level;
+    // clause index, or -2 - p when implied by the binary clause (not p or lit)
+    private int[] reason;
+    private boolean[] phase;
+    private boolean[] seen;
+
+    private int[] trail;
+    private int trailLen;
+    private int qhead;
+    private int[] trailLim;
+    private int decisionLevel;
+
+    private List<int[]> clauses;
+    private int originals;
+    private double[] clauseActivity;
+    private double clauseInc;
+    // per literal: clauses watching it, literals it implies through binary clauses
+    private IntList[] watches;
+    private IntList[] implied;
+    private final int[] binary = new int[2];
+    private boolean unsat;
+
+    private double[] activity;
+    private double varInc;
+    private int[] heap;
+    private int heapSize;
+    private int[] heapIndex;
+
+    private CancellationToken token = CancellationToken.NONE;
+    private long deadline = CancellationToken.NO_DEADLINE;
+    private boolean aborted;
+
+    // counted per run, then added to the SolverStats
+    private long decisions;
+    private long conflicts;
+    private long propagations;
+    private long restarts;
+
+    SatSolver(int box) {
+        this.box = box;
+        this.size = box * box;
+        this.cells = size * size;
+        this.all = (1 << size) - 1;
+        this.layout = Layout.of(box);
+    }
+
+    @Override
+    public boolean solve(int[] puzzle, CancellationToken token, long deadline) {
+        aborted = false;
+        decisions = 0;
+        conflicts = 0;
+        propagations = 0;
+        restarts = 0;
+        this.token = token;
+        this.deadline = deadline;
+        try {
+            if (!encode(puzzle) || !search()) {
+                return false;
+            }
+            for (int v = 0; v < vars; v++) {
+                if (value[v] == TRUE) {
+                    puzzle[cellOf[v]] = digitOf[v];
+                }
+            }
+            return true;
+        } finally {
+            this.token = CancellationToken.NONE;
+            this.deadline = CancellationToken.NO_DEADLINE;
+            // let the clauses go
+            this.clauses = null;
+            this.watches = null;
+            this.implied = null;
+            SolverStats.get().search(decisions, conflicts, propagations);
+            SolverStats.get().restarts(restarts);
+        }
+    }
+
+    @Override
+    public boolean aborted() {
+        return aborted;
+    }
+
+    /**
+     * Build the clauses of the puzzle; return false if the givens already rule out a solution.
+     */
+    private boolean encode(int[] puzzle) {
+        final int[] unitMask = new int[layout.units.length];
+        for (int u = 0; u < layout.units.length; u++) {
+            for (int i : layout.units[u]) {
+                final int n = puzzle[i];
+                if (n == 0) {
+                    continue;
+                }
+                if ((unitMask[u] & 1 << (n - 1)) != 0) {
+                    // conflicting givens
+                    return false;
+                }
+                unitMask[u] |= 1 << (n - 1);
+            }
+        }
+
+        varOf = new int[cells * size];
+        Arrays.fill(varOf, -1);
+        vars = 0;
+        for (int i = 0; i < cells; i++) {
+            if (puzzle[i] != 0) {
+                continue;
+            }
+            final int cand = all & ~(unitMask[layout.rowOf[i]] | unitMask[size + layout.colOf[i]]
+                    | unitMask[2 * size + layout.boxOf[i]]);
+            if (cand == 0) {
+                return false;
+            }
+            for (int d = 0; d < size; d++) {
+                if ((cand & 1 << d) != 0) {
+                    varOf[i * size + d] = vars++;
+                }
+            }
+        }
+        allocate();
+        for (int i = 0; i < cells; i++) {
+            for (int d = 0; d < size; d++) {
+                final int v = varOf[i * size + d];
+                if (v >= 0) {
+                    cellOf[v] = i;
+                    digitOf[v] = d + 1;
+                }
+            }
+        }
+
+        final int[] lits = new int[size];
+        for (int i = 0; i < cells && !unsat; i++) {
+            int n = 0;
+            for (int d = 0; d < size; d++) {
+                final int v = varOf[i * size + d];
+                if (v >= 0) {
+                    lits[n++] = 2 * v;
+                }
+            }
+            if (n > 0) {
+                exactlyOne(lits, n);
+            }
+        }
+        for (int u = 0; u < layout.units.length && !unsat; u++) {
+            for (int d = 0; d < size && !unsat; d++) {
+                if ((unitMask[u] & 1 << d) != 0) {
+                    continue;
+                }
+                int n = 0;
+                for (int i : layout.units[u]) {
+                    final int v = varOf[i * size + d];
+                    if (v >= 0) {
+                        lits[n++] = 2 * v;
+                    }
+                }
+                exactlyOne(lits, n);
+            }
+        }
+        originals = clauses.size();
+        return !unsat;
+    }
+
+    private void allocate() {
+        cellOf = new int[vars];
+        digitOf = new int[vars];
+        value = new byte[vars];
+        level = new int[vars];
+        reason = new int[vars];
+        Arrays.fill(reason, NO_REASON);
+        phase = new boolean[vars];
+        seen = new boolean[vars];
+        trail = new int[vars];
+        trailLen = 0;
+        qhead = 0;
+        trailLim = new int[vars + 1];
+        decisionLevel = 0;
+
+        clauses = new ArrayList<>();
+        clauseActivity = new double[64];
+        clauseInc = 1;
+        watches = new IntList[2 * vars];
+        implied = new IntList[2 * vars];
+        for (int l = 0; l < 2 * vars; l++) {
+            watches[l] = new IntList();
+            implied[l] = new IntList();
+        }
+        unsat = false;
+
+        activity = new double[vars];
+        varInc = 1;
+        heap = new int[vars];
+        heapIndex = new int[vars];
+        heapSize = 0;
+        for (int v = 0; v < vars; v++) {
+            heapIndex[v] = -1;
+            heapInsert(v);
+        }
+    }
+
+    private void exactlyOne(int[] lits, int n) {
+        addClause(Arrays.copyOf(lits, n));
+        for (int a = 0; a < n; a++) {
+            for (int b = a + 1; b < n; b++) {
+                binary(lits[a] ^ 1, lits[b] ^ 1);
+            }
+        }
+    }
+
+    /**
+     * Add an original clause at level 0.
+     */
+    private void addClause(int[] c) {
+        switch (c.length) {
+            case 0:
+                unsat = true;
+                break;
+            case 1:
+                if (litValue(c[0]) == FALSE) {
+                    unsat = true;
+                } else if (litValue(c[0]) == 0) {
+                    assign(c[0], NO_REASON);
+                }
+                break;
+            case 2:
+                binary(c[0], c[1]);
+                break;
+            default:
+                watch(c);
+        }
+    }
+
+    private void binary(int a, int b) {
+        implied[a ^ 1].add(b);
+        implied[b ^ 1].add(a);
+    }
+
+    private int watch(int[] c) {
+        final int ci = clauses.size();
+        clauses.add(c);
+        if (ci == clauseActivity.length) {
+            clauseActivity = Arrays.copyOf(clauseActivity, 2 * ci);
+        }
+        clauseActivity[ci] = 0;
+        watches[c[0]].add(ci);
+        watches[c[1]].add(ci);
+        return ci;
+    }
+
+    /**
+     * Return true if satisfiable, false if not or the search was given up.
+     */
+    private boolean search() {
+        if (propagate() != null) {
+            return false;
+        }
+        double maxLearnts = Math.max(MIN_LEARNTS, originals / 3.0);
+        long restartAt = RESTART_CONFLICTS * luby(0);
+        final IntList learnt = new IntList();
+        while (true) {
+            final int[] conflict = propagate();
+            if (conflict != null) {
+                if (decisionLevel == 0) {
+                    return false;
+                }
+                if ((++conflicts & STOP_CHECK_MASK) == 0 && token.stop(deadline)) {
+                    aborted = true;
+                    return false;
+                }
+                final int back = analyze(conflict, learnt);
+                backtrack(back);
+                learn(learnt);
+                varInc /= VAR_DECAY;
+                clauseInc /= CLAUSE_DECAY;
+                continue;
+            }
+
+            if (conflicts >= restartAt) {
+                backtrack(0);
+                restartAt = conflicts + RESTART_CONFLICTS * luby(++restarts);
+                if (clauses.size() - originals >= maxLearnts) {
+                    reduceLearnts();
+                    maxLearnts *= LEARNTS_GROWTH;
+                }
+                continue;
+            }
+
+            final int v = nextVariable();
+            if (v < 0) {
+                return true;
+            }
+            if ((++decisions & STOP_CHECK_MASK) == 0 && token.stop(deadline)) {
+                aborted = true;
+                return false;
+            }
+            trailLim[decisionLevel++] = trailLen;
+            assign(phase[v] ? 2 * v : 2 * v + 1, NO_REASON);
+        }
+    }
+
+    /**
+     * Propagate the assignments of the trail; return the clause falsified, or null.
+     */
+    private int[] propagate() {
+        while (qhead < trailLen) {
+            final int p = trail[qhead++];
+            final int falseLit = p ^ 1;
+
+            final IntList imp = implied[p];
+            for (int k = 0; k < imp.size; k++) {
+                final int q = imp.a[k];
+                final byte val = litValue(q);
+                if (val == FALSE) {
+                    binary[0] = q;
+                    binary[1] = falseLit;
+                    qhead = trailLen;
+                    return binary;
+                }
+                if (val == 0) {
+                    assign(q, -2 - p);
+                    propagations++;
+                }
+            }
+
+            final IntList ws = watches[falseLit];
+            int i = 0;
+            int j = 0;
+            while (i < ws.size) {
+                final int ci = ws.a[i++];
+                final int[] c = clauses.get(ci);
+                if (c[0] == falseLit) {
+                    c[0] = c[1];
+                    c[1] = falseLit;
+                }
+                if (litValue(c[0]) == TRUE) {
+                    ws.a[j++] = ci;
+                    continue;
+                }
+                boolean moved = false;
+                for (int k = 2; k < c.length; k++) {
+                    if (litValue(c[k]) != FALSE) {
+                        c[1] = c[k];
+                        c[k] = falseLit;
+                        watches[c[1]].add(ci);
+                        moved = true;
+                        break;
+                    }
+                }
+                if (moved) {
+                    continue;
+                }
+                ws.a[j++] = ci;
+                if (litValue(c[0]) == FALSE) {
+                    while (i < ws.size) {
+                        ws.a[j++] = ws.a[i++];
+                    }
+                    ws.size = j;
+                    qhead = trailLen;
+                    return c;
+                }
+                assign(c[0], ci);
+                propagations++;
+            }
+            ws.size = j;
+        }
+        return null;
+    }
+
+    /**
+     * Derive the first-UIP clause of the conflict into {@code learnt}, asserting literal first;
+     * return the level to jump back to.
+     */
+    private int analyze(int[] conflict, IntList learnt) {
+        learnt.size = 0;
+        learnt.add(-1);
+        int pending = 0;
+        int p = -1;
+        int index = trailLen - 1;
+        int[] c = conflict;
+        while (true) {
+            for (int k = p < 0 ? 0 : 1; k < c.length; k++) {
+                final int q = c[k];
+                final int v = q >> 1;
+                if (seen[v] || level[v] == 0) {
+                    continue;
+                }
+                seen[v] = true;
+                bumpVariable(v);
+                if (level[v] >= decisionLevel) {
+                    pending++;
+                } else {
+                    learnt.add(q);
+                }
+            }
+            while (!seen[trail[index] >> 1]) {
+                index--;
+            }
+            p = trail[index--];
+            seen[p >> 1] = false;
+            if (--pending == 0) {
+                break;
+            }
+            c = reasonOf(p);
+        }
+        learnt.a[0] = p ^ 1;
+
+        // the literal of the highest level after the asserting one is watched too
+        int back = 0;
+        for (int k = 1; k < learnt.size; k++) {
+            final int v = learnt.a[k] >> 1;
+            seen[v] = false;
+            if (level[v] > back) {
+                back = level[v];
+                final int t = learnt.a[1];
+                learnt.a[1] = learnt.a[k];
+                learnt.a[k] = t;
+            }
+        }
+        return back;
+    }
+
+    /**
+     * The clause that implied the literal, the literal first.
+     */
+    private int[] reasonOf(int p) {
+        final int r = reason[p >> 1];
+        if (r >= 0) {
+            bumpClause(r);
+            return clauses.get(r);
+        }
+        binary[0] = p;
+        binary[1] = (-2 - r) ^ 1;
+        return binary;
+    }
+
+    private void learn(IntList learnt) {
+        final int first = learnt.a[0];
+        switch (learnt.size) {
+            case 1:
+                assign(first, NO_REASON);
+                break;
+            case 2:
+                binary(first, learnt.a[1]);
+                assign(first, -2 - (learnt.a[1] ^ 1));
+                break;
+            default:
+                final int ci = watch(Arrays.copyOf(learnt.a, learnt.size));
+                bumpClause(ci);
+                assign(first, ci);
+        }
+    }
+
+    private void backtrack(int target) {
+        if (decisionLevel <= target) {
+            return;
+        }
+        for (int k = trailLen - 1; k >= trailLim[target]; k--) {
+            final int v = trail[k] >> 1;
+            phase[v] = (trail[k] & 1) == 0;
+            value[v] = 0;
+            reason[v] = NO_REASON;
+            heapInsert(v);
+        }
+        trailLen = trailLim[target];
+        qhead = trailLen;
+        decisionLevel = target;
+    }
+
+    /**
+     * Drop the least active half of the learnt clauses, at level 0 where none is a reason;
+     * the watches are rebuilt.
+     */
+    private void reduceLearnts() {
+        final int learnts = clauses.size() - originals;
+        final Integer[] order = new Integer[learnts];
+        for (int k = 0; k < learnts; k++) {
+            order[k] = originals + k;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(clauseActivity[b], clauseActivity[a]));
+        final List<int[]> kept = new ArrayList<>(clauses.subList(0, originals));
+        final double[] keptActivity = new double[clauseActivity.length];
+        for (int k = 0; k < learnts / 2; k++) {
+            keptActivity[kept.size()] = clauseActivity[order[k]];
+            kept.add(clauses.get(order[k]));
+        }
+        clauses = kept;
+        clauseActivity = keptActivity;
+        for (IntList w : watches) {
+            w.size = 0;
+        }
+        for (int ci = 0; ci < clauses.size(); ci++) {
+            final int[] c = clauses.get(ci);
+            watches[c[0]].add(ci);
+            watches[c[1]].add(ci);
+        }
+    }
+
+    private void assign(int lit, int why) {
+        final int v = lit >> 1;
+        value[v] = (lit & 1) == 0 ? TRUE : FALSE;
+        level[v] = decisionLevel;
+        reason[v] = why;
+        trail[trailLen++] = lit;
+    }
+
+    private byte litValue(int lit) {
+        final byte val = value[lit >> 1];
+        return (lit & 1) == 0 ? val : (byte) -val;
+    }
+
+    private void bumpVariable(int v) {
+        if ((activity[v] += varInc) > RESCALE_LIMIT) {
+            for (int k = 0; k < vars; k++) {
+                activity[k] /= RESCALE_LIMIT;
+            }
+            varInc /= RESCALE_LIMIT;
+        }
+        if (heapIndex[v] >= 0) {
+            heapUp(heapIndex[v]);
+        }
+    }
+
+    private void bumpClause(int ci) {
+        if (ci < originals) {
+            return;
+        }
+        if ((clauseActivity[ci] += clauseInc) > RESCALE_LIMIT) {
+            for (int k = originals; k < clauses.size(); k++) {
+                clauseActivity[k] /= RESCALE_LIMIT;
+            }
+            clauseInc /= RESCALE_LIMIT;
+        }
+    }
+
+    /**
+     * The unassigned variable of highest activity, -1 once all are assigned.
+     */
+    private int nextVariable() {
+        while (heapSize > 0) {
+            final int v = heapRemoveMax();
+            if (value[v] == 0) {
+                return v;
+            }
+        }
+        return -1;
+    }
+
+    // 1, 1, 2, 1, 1, 2, 4, 1, 1, 2, 1, 1, 2, 4, 8, ...
+    private static long luby(long i) {
+        long size = 1;
+        int seq = 0;
+        while (size < i + 1) {
+            seq++;
+            size = 2 * size + 1;
+        }
+        while (size - 1 != i) {
+            size = (size - 1) >> 1;
+            seq--;
+            i = i % size;
+        }
+        return 1L << seq;
+    }
+
+    // binary max-heap of the variables by activity
+
+    private void heapInsert(int v) {
+        if (heapIndex[v] >= 0) {
+            return;
+        }
+        heap[heapSize] = v;
+        heapIndex[v] = heapSize;
+        heapUp(heapSize++);
+    }
+
+    private int heapRemoveMax() {
+        final int v = heap[0];
+        heapIndex[v] = -1;
+        if (--heapSize > 0) {
+            heap[0] = heap[heapSize];
+            heapIndex[heap[0]] = 0;
+            heapDown(0);
+        }
+        return v;
+    }
+
+    private void heapUp(int k) {
+        final int v = heap[k];
+        while (k > 0) {
+            final int parent = (k - 1) >> 1;
+            if (activity[heap[parent]] >= activity[v]) {
+                break;
+            }
+            heap[k] = heap[parent];
+            heapIndex[heap[k]] = k;
+            k = parent;
+        }
+        heap[k] = v;
+        heapIndex[v] = k;
+    }
+
+    private void heapDown(int k) {
+        final int v = heap[k];
+        while (true) {
+            int child = 2 * k + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && activity[heap[child + 1]] > activity[heap[child]]) {
+                child++;
+            }
+            if (activity[heap[child]] <= activity[v]) {
+                break;
+            }
+            heap[k] = heap[child];
+            heapIndex[heap[k]] = k;
+            k = child;
+        }
+        heap[k] = v;
+        heapIndex[v] = k;
+    }
+
+    private static final class IntList {
+        int[] a = new int[4];
+        int size;
+
+        void add(int x) {
+            if (size == a.length) {
+                a = Arrays.copyOf(a, 2 * size);
+            }
+            a[size++] = x;
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package com.github.cloudecho.sudoku;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Headless HTTP service over the solver, built on the JDK's {@code com.sun.net.httpserver}.
+ * <ul>
+ * <li>{@code /solve?puzzle=...}: the solution line, {@code 422} if there is none</li>
+ * <li>{@code /validate?puzzle=...}: {@code unique}, {@code multiple}, {@code unsolvable} or {@code conflict},
+ * {@code 504} if it could not be told in time</li>
+ * <li>{@code /generate?level=easy|normal|hard}: a puzzle line with a unique solution from the stock
+ * of a {@link PuzzlePool}, {@code 503} while it is being refilled</li>
+ * </ul>
+ * A puzzle is 81 characters as in {@link Batch}, given as the {@code puzzle} parameter or the request body.
+ * <p>
+ * Solve and validate requests are queued and a batching thread hands them to the {@link SolverPool}
+ * in work units of up to {@value #KEY_SERVER_BATCH} requests. When the queue is full or the pool
+ * rejects a unit, the requests are answered {@code 503} with a {@code Retry-After} header; with the other
+ * rejection policies of the pool the batching thread itself slows down, and the queue fills up instead.
+ *
+ * <pre>
+ * java -cp sudoku.jar com.github.cloudecho.sudoku.Server [port]
+ * </pre>
+ */
+public class Server {
+    static final String KEY_SERVER_THREADS = "SERVER_THREADS";
+    static final String KEY_SERVER_QUEUE = "SERVER_QUEUE";
+    static final String KEY_SERVER_BATCH = "SERVER_BATCH";
+    static final String KEY_SERVER_TIMEOUT = "SERVER_TIMEOUT";
+    static final int DEFAULT_PORT = 8080;
+    static final int DEFAULT_SERVER_QUEUE = 4096;
+    static final int DEFAULT_SERVER_BATCH = 64;
+    static final int DEFAULT_SERVER_TIMEOUT = 5000;
+
+    private static final int LENGTH = 81;
+    private static final int MAX_BODY = 4096;
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    private final HttpServer http;
+    private final ExecutorService handlers;
+    private final BlockingQueue<Job> jobs;
+    private final int batchSize;
+    private final long timeoutMillis;
+    private final Thread batcher;
+    private final PuzzlePool puzzles = new PuzzlePool(3, Sudoku.EASY, Sudoku.NORMAL, Sudoku.HARD);
+    private volatile boolean stopped;
+
+    public Server(int port, int threads, int queueDepth, int batchSize, long timeoutMillis) throws IOException {
+        this.jobs = new ArrayBlockingQueue<>(queueDepth);
+        this.batchSize = batchSize;
+        this.timeoutMillis = timeoutMillis;
+        this.handlers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int n;
+
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "sudoku-http-" + n++);
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        this.http = HttpServer.create(new InetSocketAddress(port), 0);
+        this.http.setExecutor(handlers);
+        this.http.createContext("/solve", e -> handle(e, Job.SOLVE));
+        this.http.createContext("/validate", e -> handle(e, Job.VALIDATE));
+        this.http.createContext("/generate", this::generate);
+        this.batcher = new Thread(this::batching, "sudoku-http-batcher");
+        this.batcher.setDaemon(true);
+    }
+
+    public void start() {
+        puzzles.start();
+        batcher.start();
+        http.start();
+        Log.info("listening on port", http.getAddress().getPort());
+    }
+
+    public void stop() {
+        stopped = true;
+        http.stop(0);
+        batcher.interrupt();
+        puzzles.close();
+        handlers.shutdown();
+    }
+
+    int port() {
+        return http.getAddress().getPort();
+    }
+
+    /**
+     * A solve or validate request, completed with the response status and body.
+     */
+    private static final class Job {
+        static final int SOLVE = 0;
+        static final int VALIDATE = 1;
+
+        final int kind;
+        final int[] cells;
+        final long deadline;
+        final CompletableFuture<Response> result = new CompletableFuture<>();
+
+        Job(int kind, int[] cells, long deadline) {
+            this.kind = kind;
+            this.cells = cells;
+            this.deadline = deadline;
+        }
+    }
+
+    private static final class Response {
+        static final Response BUSY = new Response(503, "busy");
+        static final Response TIMED_OUT = new Response(504, "timed out");
+
+        final int status;
+        final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private void handle(HttpExchange exchange, int kind) throws IOException {
+        try {
+            final String puzzle = puzzleOf(exchange);
+            final int[] cells = new int[LENGTH];
+            if (puzzle == null || !Batch.parse(puzzle, cells)) {
+                respond(exchange, new Response(400, "malformed puzzle"));
+                return;
+            }
+
+            final Job job = new Job(kind, cells, System.nanoTime() + timeoutMillis * 1_000_000);
+            if (!jobs.offer(job)) {
+                respond(exchange, Response.BUSY);
+                return;
+            }
+            Response response;
+            try {
+                response = job.result.get(timeoutMillis + 1000, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                response = Response.BUSY;
+            } catch (ExecutionException e) {
+                Log.warn("request failed", e.getCause());
+                response = new Response(500, "internal error");
+            } catch (TimeoutException e) {
+                response = Response.TIMED_OUT;
+            }
+            respond(exchange, response);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void generate(HttpExchange exchange) throws IOException {
+        try {
+            final String level = param(exchange.getRequestURI().getRawQuery(), "level");
+            final float p;
+            if (level == null || "easy".equalsIgnoreCase(level)) {
+                p = Sudoku.EASY;
+            } else if ("normal".equalsIgnoreCase(level)) {
+                p = Sudoku.NORMAL;
+            } else if ("hard".equalsIgnoreCase(level)) {
+                p = Sudoku.HARD;
+            } else {
+                respond(exchange, new Response(400, "unknown level"));
+                return;
+            }
+            // generating here would bypass the solver pool and its admission limit
+            final Model puzzle = puzzles.poll(p);
+            if (puzzle == null) {
+                respond(exchange, Response.BUSY);
+                return;
+            }
+            final StringBuilder b = new StringBuilder(LENGTH);
+            for (int n : puzzle.toCells()) {
+                b.append(n == 0 ? '.' : (char) ('0' + n));
+            }
+            respond(exchange, new Response(200, b.toString()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Hand the queued jobs to the solver pool, as many as are waiting up to the batch size per unit.
+     */
+    private void batching() {
+        final SolverPool pool = SolverPool.shared();
+        while (!stopped) {
+            final List<Job> batch = new ArrayList<>(batchSize);
+            try {
+                batch.add(jobs.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            jobs.drainTo(batch, batchSize - 1);
+            try {
+                pool.execute(() -> run(batch));
+            } catch (RejectedExecutionException e) {
+                Log.debug("solver pool saturated, rejected", batch.size(), "requests");
+                for (Job job : batch) {
+                    job.result.complete(Response.BUSY);
+                }
+            }
+        }
+        for (Job job; (job = jobs.poll()) != null; ) {
+            job.result.complete(Response.BUSY);
+        }
+    }
+
+    private static void run(List<Job> batch) {
+        final PropagationSolver solver = Model.propagationSolver(3);
+        for (Job job : batch) {
+            try {
+                job.result.complete(job.kind == Job.SOLVE ? solve(solver, job) : validate(solver, job));
+            } catch (RuntimeException e) {
+                job.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static Response solve(PropagationSolver solver, Job job) {
+        final SolutionCache cache = SolutionCache.shared();
+        final int[] cells = job.cells;
+        if (cache != null) {
+            final int[] solution = cache.get(3, cells);
+            if (solution != null) {
+                return new Response(200, line(solution));
+            }
+        }
+        final int[] puzzle = cells.clone();
+        final long start = System.nanoTime();
+        final boolean ok = solver.solve(cells, CancellationToken.NONE, job.deadline);
+        final SolveStatus status = ok ? SolveStatus.SOLVED :
+                solver.aborted() ? SolveStatus.TIMED_OUT : SolveStatus.UNSOLVABLE;
+        SolverStats.get().solved(status, System.nanoTime() - start);
+        switch (status) {
+            case SOLVED:
+                if (cache != null) {
+                    cache.put(3, puzzle, cells);
+                }
+                return new Response(200, line(cells));
+            case TIMED_OUT:
+                return Response.TIMED_OUT;
+            default:
+                return new Response(422, "no solution");
+        }
+    }
+
+    private static Response validate(PropagationSolver solver, Job job) {
+        final Model model = new Model(3);
+        model.fromCells(job.cells);
+        if (model.hasConflicts()) {
+            return new Response(200, "conflict");
+        }
+        final int count = solver.countSolutions(job.cells, 2, CancellationToken.NONE, job.deadline);
+        if (solver.aborted()) {
+            return Response.TIMED_OUT;
+        }
+        switch (count) {
+            case 0:
+                return new Response(200, "unsolvable");
+            case 1:
+                return new Response(200, "unique");
+            default:
+                return new Response(200, "multiple");
+        }
+    }
+
+    private static String line(int[] cells) {
+        final StringBuilder b = new StringBuilder(LENGTH);
+        for (int n : cells) {
+            b.append((char) ('0' + n));
+        }
+        return b.toString();
+    }
+
+    private static String puzzleOf(HttpExchange exchange) throws IOException {
+        final String puzzle = param(exchange.getRequestURI().getRawQuery(), "puzzle");
+        if (puzzle != null) {
+            return puzzle;
+        }
+        final ByteArrayOutputStream body = new ByteArrayOutputStream(LENGTH + 2);
+        final byte[] buf = new byte[512];
+        try (InputStream in = exchange.getRequestBody()) {
+            for (int n; (n = in.read(buf)) > 0; ) {
+                if (body.size() + n > MAX_BODY) {
+                    return null;
+                }
+                body.write(buf, 0, n);
+            }
+        }
+        return body.size() == 0 ? null : new String(body.toByteArray(), StandardCharsets.US_ASCII).trim();
+    }
+
+    private static String param(String query, String name) {
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            final int eq = pair.indexOf('=');
+            if (eq > 0 && name.equals(pair.substring(0, eq))) {
+                try {
+                    return URLDecoder.decode(pair.substring(eq + 1), "UTF-8");
+                } catch (java.io.UnsupportedEncodingException | IllegalArgumentException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void respond(HttpExchange exchange, Response response) throws IOException {
+        final byte[] body = (response.body + '\n').getBytes(StandardCharsets.US_ASCII);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=us-ascii");
+        if (response.status == 503) {
+            exchange.getResponseHeaders().set("Retry-After", RETRY_AFTER_SECONDS);
+        }
+        exchange.sendResponseHeaders(response.status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        final int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        final int threads = Integer.getInteger(KEY_SERVER_THREADS, 4 * Runtime.getRuntime().availableProcessors());
+        final Server server = new Server(port, threads,
+                Integer.getInteger(KEY_SERVER_QUEUE, DEFAULT_SERVER_QUEUE),
+                Integer.getInteger(KEY_SERVER_BATCH, DEFAULT_SERVER_BATCH),
+                Integer.getInteger(KEY_SERVER_TIMEOUT, DEFAULT_SERVER_TIMEOUT));
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "sudoku-http-stop"));
+        server.start();
+    }
+}
@@ -0,0 +1,239 @@
+package com.github.cloudecho.sudoku;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Solutions of the puzzles solved lately, in front of the solvers; enabled by the
+ * {@value #KEY_SOLUTION_CACHE} system property.
+ * <p>
+ * A solution is stored under the puzzle as given, so that a repeated puzzle costs one lookup.
+ * With {@value #KEY_SOLUTION_CACHE_MINLEX}, up to 9x9 it is also stored under its minlex form
+ * (see {@link Canonicalizer}), so that an equivalent puzzle is answered by mapping the cached solution back
+ * through its own transformation; every miss then pays for a minlex search. Keys and solutions are packed with
+ * {@link PuzzleCodec}. Entries are evicted least recently used first, once there are more than
+ * {@value #KEY_SOLUTION_CACHE_SIZE} entries or they weigh more than {@value #KEY_SOLUTION_CACHE_WEIGHT} bytes.
+ */
+public class SolutionCache implements SolutionCacheMBean {
+    static final String OBJECT_NAME = "com.github.cloudecho.sudoku:type=SolutionCache";
+    static final String KEY_SOLUTION_CACHE = "SOLUTION_CACHE";
+    static final String KEY_SOLUTION_CACHE_SIZE = "SOLUTION_CACHE_SIZE";
+    static final String KEY_SOLUTION_CACHE_WEIGHT = "SOLUTION_CACHE_WEIGHT";
+    static final String KEY_SOLUTION_CACHE_MINLEX = "SOLUTION_CACHE_MINLEX";
+    static final int DEFAULT_SOLUTION_CACHE_SIZE = 100_000;
+    static final long DEFAULT_SOLUTION_CACHE_WEIGHT = 32L << 20;
+
+    // estimated bytes of an entry besides its key and solution: map entry, key object, arrays
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private static final ThreadLocal<Canonicalizing> CANONICALIZING = ThreadLocal.withInitial(Canonicalizing::new);
+
+    private static volatile SolutionCache shared;
+
+    private final int maxSize;
+    private final long maxWeight;
+    private final boolean minlex;
+    private final LinkedHashMap<Key, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder canonicalHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    SolutionCache(int maxSize, long maxWeight, boolean minlex) {
+        this.maxSize = maxSize;
+        this.maxWeight = maxWeight;
+        this.minlex = minlex;
+    }
+
+    /**
+     * Return the cache shared by all models, null unless enabled.
+     */
+    static SolutionCache shared() {
+        if (!Boolean.getBoolean(KEY_SOLUTION_CACHE)) {
+            return null;
+        }
+        SolutionCache c = shared;
+        if (c == null) {
+            synchronized (SolutionCache.class) {
+                c = shared;
+                if (c == null) {
+                    c = new SolutionCache(Integer.getInteger(KEY_SOLUTION_CACHE_SIZE, DEFAULT_SOLUTION_CACHE_SIZE),
+                            Long.getLong(KEY_SOLUTION_CACHE_WEIGHT, DEFAULT_SOLUTION_CACHE_WEIGHT),
+                            Boolean.getBoolean(KEY_SOLUTION_CACHE_MINLEX));
+                    try {
+                        ManagementFactory.getPlatformMBeanServer().registerMBean(c, new ObjectName(OBJECT_NAME));
+                    } catch (JMException e) {
+                        Log.warn("could not register", OBJECT_NAME, e);
+                    }
+                    shared = c;
+                }
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Return a cached solution of the puzzle, or null.
+     *
+     * @param box the box size of the board
+     */
+    int[] get(int box, int[] puzzle) {
+        final PuzzleCodec codec = PuzzleCodec.of(box);
+        byte[] value = lookup(key(codec, puzzle));
+        if (value != null) {
+            hits.increment();
+            return decode(codec, value);
+        }
+        if (minlex && box <= Canonicalizer.MAX_BOX) {
+            final Canonicalizer.Form form = CANONICALIZING.get().form(box, puzzle);
+            value = lookup(key(codec, form.cells));
+            if (value != null) {
+                canonicalHits.increment();
+                final int[] solution = form.fromCanonical(decode(codec, value));
+                store(key(codec, puzzle), encode(codec, puzzle, solution));
+                return solution;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Cache the solution of the puzzle.
+     */
+    void put(int box, int[] puzzle, int[] solution) {
+        final PuzzleCodec codec = PuzzleCodec.of(box);
+        store(key(codec, puzzle), encode(codec, puzzle, solution));
+        if (minlex && box <= Canonicalizer.MAX_BOX) {
+            final Canonicalizer.Form form = CANONICALIZING.get().form(box, puzzle);
+            store(key(codec, form.cells), encode(codec, form.cells, form.toCanonical(solution)));
+        }
+    }
+
+    private synchronized byte[] lookup(Key key) {
+        return entries.get(key);
+    }
+
+    private synchronized void store(Key key, byte[] value) {
+        final byte[] old = entries.put(key, value);
+        weight += old != null ? value.length - old.length : weightOf(key, value);
+        for (Iterator<Map.Entry<Key, byte[]>> it = entries.entrySet().iterator();
+             it.hasNext() && (entries.size() > maxSize || weight > maxWeight); ) {
+            final Map.Entry<Key, byte[]> eldest = it.next();
+            weight -= weightOf(eldest.getKey(), eldest.getValue());
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    private static long weightOf(Key key, byte[] value) {
+        return ENTRY_OVERHEAD + key.bytes.length + value.length;
+    }
+
+    private static Key key(PuzzleCodec codec, int[] puzzle) {
+        final ByteBuffer b = ByteBuffer.allocate(codec.recordBytes);
+        codec.encode(puzzle, null, b, 0);
+        return new Key(b.array());
+    }
+
+    private static byte[] encode(PuzzleCodec codec, int[] puzzle, int[] solution) {
+        final ByteBuffer b = ByteBuffer.allocate(codec.recordBytes);
+        codec.encode(puzzle, solution, b, 0);
+        return b.array();
+    }
+
+    private static int[] decode(PuzzleCodec codec, byte[] value) {
+        final int[] solution = new int[codec.cells];
+        codec.decode(ByteBuffer.wrap(value), 0, null, solution);
+        return solution;
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getCanonicalHits() {
+        return canonicalHits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public double getHitRate() {
+        final long h = hits.sum() + canonicalHits.sum();
+        final long n = h + misses.sum();
+        return n == 0 ? 0 : (double) h / n;
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    @Override
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * Minlex forms for one thread, remembering the last form:
+     * a miss is usually followed by a put of the same puzzle.
+     */
+    private static final class Canonicalizing {
+        private int[] puzzle;
+        private Canonicalizer.Form form;
+
+        Canonicalizer.Form form(int box, int[] puzzle) {
+            if (!Arrays.equals(puzzle, this.puzzle)) {
+                this.form = Model.canonicalizer(box).canonicalize(puzzle);
+                this.puzzle = puzzle.clone();
+            }
+            return form;
+        }
+    }
+
+    private static final class Key {
+        final byte[] bytes;
+        private final int hash;
+
+        Key(byte[] bytes) {
+            this.bytes = bytes;
+            this.hash = Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(bytes, ((Key) o).bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.github.cloudecho.sudoku;
+
+/**
+ * JMX view of the {@link SolutionCache}, registered as {@value SolutionCache#OBJECT_NAME}.
+ */
+public interface SolutionCacheMBean {
+    /**
+     * Lookups answered by the puzzle as given.
+     */
+    long getHits();
+
+    /**
+     * Lookups answered by an equivalent puzzle, through its minlex form.
+     */
+    long getCanonicalHits();
+
+    long getMisses();
+
+    double getHitRate();
+
+    long getEvictions();
+
+    int getSize();
+
+    long getWeight();
+
+    void clear();
+}
@@ -0,0 +1,138 @@
+package com.github.cloudecho.sudoku;
+
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+/**
+ * Counts or enumerates every solution of a puzzle in parallel.
+ * <p>
+ * The search tree is split into {@link RecursiveTask}s: down to {@value #KEY_ENUMERATE_SPLIT_DEPTH} levels,
+ * a task propagates its grid, branches on the most constrained cell and forks one task per candidate;
+ * below that depth a task searches its subtree alone with a {@link PropagationSolver}.
+ * The tasks run on the fork-join pool of the {@link SolverPool}, so idle workers steal the pending subtrees;
+ * the enumeration as a whole holds one slot of the pool, see {@link SolverPool#invoke}.
+ * <p>
+ * Solutions are passed to the sink from the worker threads as they are found, each in its own array;
+ * the sink must be thread-safe. Without a sink only the counts are summed up.
+ * Instances run one enumeration at a time.
+ */
+class SolutionEnumerator {
+    static final String KEY_ENUMERATE_SPLIT_DEPTH = "ENUMERATE_SPLIT_DEPTH";
+    static final int DEFAULT_ENUMERATE_SPLIT_DEPTH = 8;
+
+    final int box;
+    private final int splitDepth;
+    private final SolverPool pool;
+
+    private CancellationToken token = CancellationToken.NONE;
+    private long deadline = CancellationToken.NO_DEADLINE;
+    private Consumer<int[]> sink;
+    private volatile boolean aborted;
+
+    SolutionEnumerator(int box) {
+        this(box, Integer.getInteger(KEY_ENUMERATE_SPLIT_DEPTH, DEFAULT_ENUMERATE_SPLIT_DEPTH),
+                SolverPool.shared());
+    }
+
+    SolutionEnumerator(int box, int splitDepth, SolverPool pool) {
+        if (box < Model.MIN_BOX || box > Model.MAX_BOX) {
+            throw new IllegalArgumentException("box size out of range: " + box);
+        }
+        this.box = box;
+        this.splitDepth = splitDepth;
+        this.pool = pool;
+    }
+
+    /**
+     * Return the number of solutions of the puzzle.
+     */
+    long count(int[] puzzle) {
+        return forEach(puzzle, null, CancellationToken.NONE, CancellationToken.NO_DEADLINE);
+    }
+
+    /**
+     * Pass every solution of the puzzle to the sink, see {@link #forEach(int[], Consumer, CancellationToken, long)}.
+     */
+    long forEach(int[] puzzle, Consumer<int[]> sink) {
+        return forEach(puzzle, sink, CancellationToken.NONE, CancellationToken.NO_DEADLINE);
+    }
+
+    /**
+     * Pass every solution of the puzzle to the sink unless it is null, stopping early once the token
+     * is cancelled or the deadline passes, see {@link #aborted()}. The cells are left untouched.
+     *
+     * @return the number of solutions found
+     * @throws java.util.concurrent.RejectedExecutionException if the solver pool is full
+     */
+    long forEach(int[] puzzle, Consumer<int[]> sink, CancellationToken token, long deadline) {
+        if (puzzle.length != box * box * box * box) {
+            throw new IllegalArgumentException("expected " + box * box * box * box + " cells, got " + puzzle.length);
+        }
+        this.token = token;
+        this.deadline = deadline;
+        this.sink = sink;
+        this.aborted = false;
+        try {
+            return pool.invoke(new Subtree(puzzle.clone(), 0));
+        } finally {
+            this.token = CancellationToken.NONE;
+            this.deadline = CancellationToken.NO_DEADLINE;
+            this.sink = null;
+        }
+    }
+
+    /**
+     * Return true if the last enumeration stopped before visiting the whole search tree.
+     */
+    boolean aborted() {
+        return aborted;
+    }
+
+    private final class Subtree extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] grid;
+        private final int depth;
+
+        Subtree(int[] grid, int depth) {
+            this.grid = grid;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            if (aborted || token.stop(deadline)) {
+                aborted = true;
+                return 0L;
+            }
+            final PropagationSolver solver = Model.propagationSolver(box);
+            if (depth >= splitDepth) {
+                final long n = solver.enumerate(grid, sink, token, deadline);
+                if (solver.aborted()) {
+                    aborted = true;
+                }
+                return n;
+            }
+
+            // the solver is done with before any join, as a joining worker may run other subtrees
+            final int[][] branches = solver.branch(grid);
+            if (branches == null) {
+                if (sink != null) {
+                    sink.accept(grid);
+                }
+                return 1L;
+            }
+            final Subtree[] subtrees = new Subtree[branches.length];
+            for (int k = 0; k < branches.length; k++) {
+                subtrees[k] = new Subtree(branches[k], depth + 1);
+            }
+            ForkJoinTask.invokeAll(subtrees);
+            long n = 0;
+            for (Subtree t : subtrees) {
+                n += t.join();
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.github.cloudecho.sudoku;
+
+/**
+ * Outcome of {@link Model#solveAsync(long, java.util.concurrent.TimeUnit, CancellationToken)}.
+ */
+public enum SolveStatus {
+    SOLVED,
+    /**
+     * Proven to have no solution.
+     */
+    UNSOLVABLE,
+    TIMED_OUT,
+    CANCELLED
+}
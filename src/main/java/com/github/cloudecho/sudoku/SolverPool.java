@@ -0,0 +1,228 @@
+package com.github.cloudecho.sudoku;
+
+import java.util.concurrent.*;
+
+/**
+ * Shared executor of the solving tasks, replacing the threads started on every solve.
+ * <p>
+ * By default the tasks run on a work-stealing {@link ForkJoinPool} of a fixed size.
+ * Virtual threads, one per task, can be opted into on JDKs that have them.
+ * In both modes at most {@code queueDepth} tasks are queued or running;
+ * further tasks are handled according to the {@link Rejection} policy.
+ */
+public class SolverPool implements Executor {
+    static final String KEY_SOLVER_POOL_THREADS = "SOLVER_POOL_THREADS";
+    static final String KEY_SOLVER_POOL_QUEUE = "SOLVER_POOL_QUEUE";
+    static final String KEY_SOLVER_POOL_REJECT = "SOLVER_POOL_REJECT";
+    static final String KEY_SOLVER_POOL_VIRTUAL = "SOLVER_POOL_VIRTUAL";
+    static final int DEFAULT_SOLVER_POOL_QUEUE = 1024;
+
+    public enum Rejection {
+        /**
+         * Throw a {@link RejectedExecutionException}.
+         */
+        ABORT,
+        /**
+         * Run the task on the submitting thread.
+         */
+        CALLER_RUNS,
+        /**
+         * Wait until a slot frees up.
+         */
+        BLOCK
+    }
+
+    /**
+     * Pool settings; the defaults come from the {@code SOLVER_POOL_*} system properties.
+     */
+    public static class Config {
+        int threads = Integer.getInteger(KEY_SOLVER_POOL_THREADS, Runtime.getRuntime().availableProcessors());
+        int queueDepth = Integer.getInteger(KEY_SOLVER_POOL_QUEUE, DEFAULT_SOLVER_POOL_QUEUE);
+        Rejection rejection = Rejection.valueOf(
+                System.getProperty(KEY_SOLVER_POOL_REJECT, Rejection.ABORT.name()).toUpperCase().replace('-', '_'));
+        boolean virtualThreads = Boolean.getBoolean(KEY_SOLVER_POOL_VIRTUAL);
+
+        public Config threads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        public Config queueDepth(int queueDepth) {
+            this.queueDepth = queueDepth;
+            return this;
+        }
+
+        public Config rejection(Rejection rejection) {
+            this.rejection = rejection;
+            return this;
+        }
+
+        public Config virtualThreads(boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+    }
+
+    private static volatile SolverPool shared;
+
+    private final ExecutorService executor;
+    private final Semaphore slots;
+    private final int queueDepth;
+    private final Rejection rejection;
+
+    public SolverPool(Config config) {
+        if (config.threads <= 0 || config.queueDepth <= 0) {
+            throw new IllegalArgumentException("threads and queue depth must be positive");
+        }
+        this.executor = config.virtualThreads ? virtualThreadExecutor(config.threads) : forkJoinPool(config.threads);
+        this.slots = new Semaphore(config.queueDepth);
+        this.queueDepth = config.queueDepth;
+        this.rejection = config.rejection;
+    }
+
+    private static ExecutorService forkJoinPool(int threads) {
+        return new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            t.setName("sudoku-solver-" + t.getPoolIndex());
+            t.setDaemon(true);
+            return t;
+        }, null, true);
+    }
+
+    private static ExecutorService virtualThreadExecutor(int threads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            Log.warn("virtual threads not supported by java", System.getProperty("java.version"),
+                    "- use a fork-join pool");
+            return forkJoinPool(threads);
+        }
+    }
+
+    /**
+     * Return the pool shared by all models, created on first use with the default {@link Config}.
+     */
+    public static SolverPool shared() {
+        SolverPool p = shared;
+        if (p == null) {
+            synchronized (SolverPool.class) {
+                p = shared;
+                if (p == null) {
+                    shared = p = new SolverPool(new Config());
+                }
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Return the shared pool if it has been created, null otherwise.
+     */
+    static SolverPool sharedIfCreated() {
+        return shared;
+    }
+
+    /**
+     * Replace the shared pool; the previous one finishes its running tasks and shuts down.
+     */
+    public static void configure(Config config) {
+        final SolverPool p = new SolverPool(config);
+        final SolverPool old;
+        synchronized (SolverPool.class) {
+            old = shared;
+            shared = p;
+        }
+        if (old != null) {
+            old.shutdown();
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (!slots.tryAcquire()) {
+            switch (rejection) {
+                case CALLER_RUNS:
+                    task.run();
+                    return;
+                case BLOCK:
+                    slots.acquireUninterruptibly();
+                    break;
+                default:
+                    throw new RejectedExecutionException("solver pool saturated, queue depth " + queueDepth);
+            }
+        }
+
+        run(task);
+    }
+
+    /**
+     * Submit the task if a slot is free and return true; otherwise return false at once, whatever the
+     * {@link Rejection} policy: the task never runs on the calling thread and the caller never waits.
+     */
+    boolean trySubmit(Runnable task) {
+        if (!slots.tryAcquire()) {
+            return false;
+        }
+        try {
+            run(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    // holding a slot, released once the task is done or rejected
+    private void run(Runnable task) {
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    slots.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            slots.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Run a task that splits itself into {@link ForkJoinTask}s and return its result. The whole task holds one
+     * slot, so it counts against the queue depth and is rejected as in {@link #execute(Runnable)} when the pool
+     * is full; {@link Rejection#CALLER_RUNS} waits for a slot like {@link Rejection#BLOCK}, as the subtasks need
+     * the pool anyway.
+     */
+    <T> T invoke(ForkJoinTask<T> task) {
+        if (!slots.tryAcquire()) {
+            if (rejection == Rejection.ABORT) {
+                throw new RejectedExecutionException("solver pool saturated, queue depth " + queueDepth);
+            }
+            slots.acquireUninterruptibly();
+        }
+        try {
+            return forkJoinPool().invoke(task);
+        } finally {
+            slots.release();
+        }
+    }
+
+    /**
+     * The fork-join pool running the tasks, for work that splits itself into {@link ForkJoinTask}s;
+     * the common pool when the tasks run on virtual threads.
+     */
+    ForkJoinPool forkJoinPool() {
+        return executor instanceof ForkJoinPool ? (ForkJoinPool) executor : ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Number of tasks queued or running.
+     */
+    public int pending() {
+        return queueDepth - slots.availablePermits();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
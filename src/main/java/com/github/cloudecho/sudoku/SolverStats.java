@@ -0,0 +1,249 @@
+package com.github.cloudecho.sudoku;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide solver counters, published as a platform MBean.
+ * <p>
+ * Counters are {@link LongAdder}s, striped per thread under contention. The solvers count in plain
+ * fields while searching and add them here once per run, so the search loops are not slowed down.
+ * When the {@value #KEY_STATS_DUMP_FILE} system property is set, a snapshot is also written to that file
+ * every {@value #KEY_STATS_DUMP_INTERVAL} seconds.
+ */
+public class SolverStats implements SolverStatsMBean {
+    static final String OBJECT_NAME = "com.github.cloudecho.sudoku:type=SolverStats";
+    static final String KEY_STATS_DUMP_FILE = "STATS_DUMP_FILE";
+    static final String KEY_STATS_DUMP_INTERVAL = "STATS_DUMP_INTERVAL";
+    static final int DEFAULT_STATS_DUMP_INTERVAL = 60;
+
+    // bucket i counts latencies below 2^i microseconds, the last one the rest
+    private static final int BUCKETS = 28;
+
+    private static final SolverStats INSTANCE = new SolverStats();
+
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            Log.warn("could not register", OBJECT_NAME, e);
+        }
+        final String file = System.getProperty(KEY_STATS_DUMP_FILE);
+        if (file != null) {
+            INSTANCE.dumpPeriodically(Paths.get(file),
+                    Integer.getInteger(KEY_STATS_DUMP_INTERVAL, DEFAULT_STATS_DUMP_INTERVAL));
+        }
+    }
+
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder backtracks = new LongAdder();
+    private final LongAdder propagations = new LongAdder();
+    private final LongAdder restarts = new LongAdder();
+    // indexed by SolveStatus ordinal
+    private final LongAdder[] statuses = adders(SolveStatus.values().length);
+    private final LongAdder[] latencies = adders(BUCKETS);
+    private final LongAdder solveNanos = new LongAdder();
+    private final LongAdder generated = new LongAdder();
+    private final LongAdder generateFallbacks = new LongAdder();
+    private final LongAdder generateNanos = new LongAdder();
+
+    private SolverStats() {
+    }
+
+    static SolverStats get() {
+        return INSTANCE;
+    }
+
+    private static LongAdder[] adders(int n) {
+        final LongAdder[] a = new LongAdder[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = new LongAdder();
+        }
+        return a;
+    }
+
+    /**
+     * Add the work of one search run.
+     */
+    void search(long nodes, long backtracks, long propagations) {
+        this.nodes.add(nodes);
+        this.backtracks.add(backtracks);
+        this.propagations.add(propagations);
+    }
+
+    void restarts(long n) {
+        restarts.add(n);
+    }
+
+    void solved(SolveStatus status, long nanos) {
+        statuses[status.ordinal()].increment();
+        solveNanos.add(nanos);
+        final long micros = nanos / 1000;
+        latencies[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros))].increment();
+    }
+
+    void generated(boolean fallback, long nanos) {
+        generated.increment();
+        if (fallback) {
+            generateFallbacks.increment();
+        }
+        generateNanos.add(nanos);
+    }
+
+    @Override
+    public long getNodes() {
+        return nodes.sum();
+    }
+
+    @Override
+    public long getBacktracks() {
+        return backtracks.sum();
+    }
+
+    @Override
+    public long getPropagations() {
+        return propagations.sum();
+    }
+
+    @Override
+    public long getRestarts() {
+        return restarts.sum();
+    }
+
+    @Override
+    public long getSolved() {
+        return statuses[SolveStatus.SOLVED.ordinal()].sum();
+    }
+
+    @Override
+    public long getUnsolvable() {
+        return statuses[SolveStatus.UNSOLVABLE.ordinal()].sum();
+    }
+
+    @Override
+    public long getTimedOut() {
+        return statuses[SolveStatus.TIMED_OUT.ordinal()].sum();
+    }
+
+    @Override
+    public long getCancelled() {
+        return statuses[SolveStatus.CANCELLED.ordinal()].sum();
+    }
+
+    @Override
+    public long getGenerated() {
+        return generated.sum();
+    }
+
+    @Override
+    public long getGenerateFallbacks() {
+        return generateFallbacks.sum();
+    }
+
+    @Override
+    public long[] getSolveLatencyBucketsMicros() {
+        final long[] a = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS - 1; i++) {
+            a[i] = 1L << i;
+        }
+        a[BUCKETS - 1] = Long.MAX_VALUE;
+        return a;
+    }
+
+    @Override
+    public long[] getSolveLatencyHistogram() {
+        final long[] a = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            a[i] = latencies[i].sum();
+        }
+        return a;
+    }
+
+    @Override
+    public double getSolveLatencyMeanMicros() {
+        long n = 0;
+        for (LongAdder s : statuses) {
+            n += s.sum();
+        }
+        return n == 0 ? 0 : solveNanos.sum() / 1000.0 / n;
+    }
+
+    @Override
+    public double getGenerateLatencyMeanMicros() {
+        final long n = generated.sum();
+        return n == 0 ? 0 : generateNanos.sum() / 1000.0 / n;
+    }
+
+    @Override
+    public int getPoolQueueDepth() {
+        // reading the stats must not start the pool
+        final SolverPool pool = SolverPool.sharedIfCreated();
+        return pool == null ? 0 : pool.pending();
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder a : new LongAdder[]{nodes, backtracks, propagations, restarts, solveNanos,
+                generated, generateFallbacks, generateNanos}) {
+            a.reset();
+        }
+        for (LongAdder a : statuses) {
+            a.reset();
+        }
+        for (LongAdder a : latencies) {
+            a.reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "nodes=" + getNodes() + '\n' +
+                "backtracks=" + getBacktracks() + '\n' +
+                "propagations=" + getPropagations() + '\n' +
+                "restarts=" + getRestarts() + '\n' +
+                "solved=" + getSolved() + '\n' +
+                "unsolvable=" + getUnsolvable() + '\n' +
+                "timedOut=" + getTimedOut() + '\n' +
+                "cancelled=" + getCancelled() + '\n' +
+                "generated=" + getGenerated() + '\n' +
+                "generateFallbacks=" + getGenerateFallbacks() + '\n' +
+                "solveLatencyMeanMicros=" + getSolveLatencyMeanMicros() + '\n' +
+                "solveLatencyHistogram=" + Arrays.toString(getSolveLatencyHistogram()) + '\n' +
+                "generateLatencyMeanMicros=" + getGenerateLatencyMeanMicros() + '\n' +
+                "poolQueueDepth=" + getPoolQueueDepth() + '\n';
+    }
+
+    private void dumpPeriodically(Path file, int seconds) {
+        final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sudoku-stats-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleAtFixedRate(() -> dump(file), seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Write a snapshot to the file, replacing it at once so readers never see a partial one.
+     */
+    void dump(Path file) {
+        try {
+            final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(tmp, toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Log.warn("could not dump stats to", file, e);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.cloudecho.sudoku;
+
+/**
+ * JMX view of {@link SolverStats}, registered as {@value SolverStats#OBJECT_NAME}.
+ */
+public interface SolverStatsMBean {
+    long getNodes();
+
+    long getBacktracks();
+
+    long getPropagations();
+
+    long getRestarts();
+
+    long getSolved();
+
+    long getUnsolvable();
+
+    long getTimedOut();
+
+    long getCancelled();
+
+    long getGenerated();
+
+    long getGenerateFallbacks();
+
+    /**
+     * Upper bounds of the latency histogram buckets in microseconds, the last bucket is unbounded.
+     */
+    long[] getSolveLatencyBucketsMicros();
+
+    long[] getSolveLatencyHistogram();
+
+    double getSolveLatencyMeanMicros();
+
+    double getGenerateLatencyMeanMicros();
+
+    /**
+     * Tasks queued or running on the shared {@link SolverPool}.
+     */
+    int getPoolQueueDepth();
+
+    void reset();
+}
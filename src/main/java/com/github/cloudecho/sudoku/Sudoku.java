@@ -15,13 +15,31 @@ public class Sudoku {
     public static final int STATE_SOLVED = 2;
     public static final int STATE_PUZZLING = 3;
 
-    Model model = new Model(ROW, COL);
+    /**
+     * Subgrid size: 3 for 9x9 (default), 4 for 16x16, 5 for 25x25.
+     */
+    static final String KEY_BOX_SIZE = "BOX_SIZE";
+    static final int DEFAULT_BOX_SIZE = 3;
+
+    Model model = new Model(Integer.getInteger(KEY_BOX_SIZE, DEFAULT_BOX_SIZE));
+    private final PuzzlePool puzzles = new PuzzlePool(model.box(), EASY, NORMAL, HARD);
+    final CandidateGrid candidates = new CandidateGrid(model.box());
+    private final HintEngine hints = new HintEngine(model.box());
+    /**
+     * The hint shown, null if none.
+     */
+    Hint hint;
+    /**
+     * Whether the pencil marks are shown.
+     */
+    boolean marks;
     private final Gui gui = new Gui(this);
     final Point currGrid = new Point();
 
     private volatile int state = STATE_SOLVING;
 
     public Sudoku() {
+        this.puzzles.start();
         this.init(EASY);
         this.gui.pack();
         this.gui.setVisible(true);
@@ -29,10 +47,11 @@ public class Sudoku {
 
     private void init(float level) {
         changeState(STATE_SOLVING);
-        this.model.random();
+        this.model.copyFrom(puzzles.take(level));
+        this.candidates.load(model);
+        this.clearHint();
         Log.info(this.model);
 
-        this.model.hideDigits(level);
         this.computeCurrGrid();
     }
 
@@ -44,11 +63,13 @@ public class Sudoku {
     void reset() {
         for (int i = 0; i < model.row; i++) {
             for (int j = 0; j < model.col; j++) {
-                if (model.get(i, j) > Model.MAX_NUM) {
+                if (Colors.isInput(model.get(i, j))) {
                     model.set(i, j, (byte) 0);
                 }
             }
         }
+        candidates.load(model);
+        clearHint();
         gui.repaintGui();
     }
 
@@ -92,8 +113,9 @@ public class Sudoku {
             y = 0;
         }
 
+        gui.repaintCell(currGrid.y, currGrid.x);
         currGrid.move(x, y);
-        gui.repaintGui();
+        gui.repaintCell(y, x);
     }
 
     private void changeState(int state) {
@@ -115,16 +137,16 @@ public class Sudoku {
             return;
         }
 
-        if (keycode > '9') {
-            keycode -= 48;
+        byte digit = digitOf(keycode);
+        if (digit <= 0) {
+            return;
         }
-        byte digit = (byte) (keycode - '0');
         boolean ok = checkInput(digit);
         byte n = Colors.withColor(digit, Colors.indexOf(!ok ?
                 Colors.ERROR_TEXT_COLOR :
                 puzzling() ? Colors.DEFAULT_TEXT_COLOR : Colors.INPUT_TEXT_COLOR));
         model.set(currGrid.y, currGrid.x, n);
-        gui.repaintGui();
+        candidateChanged(digit);
 
         // check resolved
         if (ok && model.isSolved()) {
@@ -142,6 +164,69 @@ public class Sudoku {
             return;
         }
         model.set(currGrid.y, currGrid.x, (byte) 0);
+        candidateChanged(0);
+    }
+
+    /**
+     * Update the candidates after the digit of the current cell changed, and repaint what they show.
+     */
+    private void candidateChanged(int digit) {
+        final int idx = currGrid.y * model.col + currGrid.x;
+        final boolean all = candidates.set(idx, digit);
+        clearHint();
+        if (marks && all) {
+            // clearing a digit restored the candidates removed by hints all over the board
+            gui.repaintGui();
+            return;
+        }
+        gui.repaintCell(currGrid.y, currGrid.x);
+        if (marks) {
+            for (int p : candidates.layout.peers[idx]) {
+                gui.repaintCell(p / model.col, p % model.col);
+            }
+        }
+    }
+
+    /**
+     * Show the next logical step; the candidates it rules out are removed from the pencil marks.
+     */
+    void hint() {
+        if (solved()) {
+            return;
+        }
+        clearHint();
+        hint = hints.next(candidates);
+        if (hint == null) {
+            gui.showHint(hints.stuck() || model.hasConflicts()
+                    ? "no hint: check the digits entered" : "no logical step found");
+            return;
+        }
+        for (int k = 0; k < hint.cells.length; k++) {
+            candidates.eliminate(hint.cells[k], hint.masks[k]);
+        }
+        gui.showHint(hint.describe(candidates.layout));
+        repaintHint();
+    }
+
+    private void clearHint() {
+        if (hint != null) {
+            repaintHint();
+            hint = null;
+            gui.showHint(null);
+        }
+    }
+
+    private void repaintHint() {
+        if (hint.cell >= 0) {
+            gui.repaintCell(hint.cell / model.col, hint.cell % model.col);
+        }
+        for (int i : hint.cells) {
+            gui.repaintCell(i / model.col, i % model.col);
+        }
+    }
+
+    void toggleMarks() {
+        marks = !marks;
         gui.repaintGui();
     }
 
@@ -150,7 +235,24 @@ public class Sudoku {
             return true;
         }
         byte n = model.get(pos.y, pos.x);
-        return n <= 0 || n > Model.MAX_NUM;
+        return n <= 0 || Colors.isInput(n);
+    }
+
+    /**
+     * Digit typed with the key: {@code 1-9} on the main keyboard or the keypad,
+     * then {@code A, B, ...} for 10 and above on large boards; 0 for other keys.
+     */
+    byte digitOf(int keycode) {
+        if (keycode >= '1' + 48 && keycode <= '9' + 48) {
+            keycode -= 48;
+        }
+        if (keycode >= '1' && keycode <= '9') {
+            return (byte) (keycode - '0');
+        }
+        if (keycode >= 'A' && keycode <= 'Z' && keycode - 'A' + 10 <= model.size) {
+            return (byte) (keycode - 'A' + 10);
+        }
+        return 0;
     }
 
     private boolean puzzling() {
@@ -159,6 +261,8 @@ public class Sudoku {
 
     void startPuzzle() {
         model.reset();
+        candidates.load(model);
+        clearHint();
         changeState(STATE_PUZZLING);
         gui.repaintGui();
     }
@@ -171,43 +275,14 @@ public class Sudoku {
      * Return true if OK.
      */
     private boolean checkInput(byte digit) {
-        // check subgrid
-        final int i0 = currGrid.y / 3 * 3;
-        final int j0 = currGrid.x / 3 * 3;
-        for (int u = 0; u < 3; u++) {
-            for (int v = 0; v < 3; v++) {
-                final int i = i0 + u;
-                final int j = j0 + v;
-                if (i == currGrid.y && j == currGrid.x) {
-                    continue;
-                }
-                if (Colors.originalDigit(model.get(i, j)) == digit) {
-                    return false;
-                }
-            }
-        }
-
-        // check row
-        for (int j = 0; j < model.col; j++) {
-            if (j == currGrid.x) {
-                continue;
-            }
-            if (Colors.originalDigit(model.get(currGrid.y, j)) == digit) {
-                return false;
-            }
-        }
-
-        // check column
-        for (int i = 0; i < model.row; i++) {
-            if (i == currGrid.y) {
-                continue;
-            }
-            if (Colors.originalDigit(model.get(i, currGrid.x)) == digit) {
-                return false;
-            }
-        }
+        return checkInput(model, currGrid.y, currGrid.x, digit);
+    }
 
-        return true;
+    /**
+     * Return true if the digit at (r, c) does not conflict with its row, column and subgrid.
+     */
+    static boolean checkInput(Model model, int r, int c, byte digit) {
+        return !model.conflicts(r, c, digit);
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,19 @@
+package com.github.cloudecho.sudoku;
+
+/**
+ * Solving techniques of the {@link HintEngine}, from the easiest to the hardest.
+ */
+enum Technique {
+    NAKED_SINGLE("naked single"),
+    HIDDEN_SINGLE("hidden single"),
+    LOCKED_CANDIDATES("locked candidates"),
+    NAKED_PAIR("naked pair"),
+    HIDDEN_PAIR("hidden pair"),
+    X_WING("x-wing");
+
+    final String label;
+
+    Technique(String label) {
+        this.label = label;
+    }
+}
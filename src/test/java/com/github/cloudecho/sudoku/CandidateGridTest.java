@@ -0,0 +1,80 @@
+package com.github.cloudecho.sudoku;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The candidates kept up to date one digit at a time match those of a grid loaded from scratch.
+ */
+class CandidateGridTest {
+    private final Random random = new Random(20261018);
+
+    @Test
+    void incrementalUpdatesMatchAFullReload() {
+        for (int box = 2; box <= 4; box++) {
+            final int size = box * box;
+            final CandidateGrid grid = new CandidateGrid(box);
+            for (int n = 0; n < 20; n++) {
+                final Model model = new Model(box);
+                model.random();
+                model.hideDigits(0.6f);
+                grid.load(model.toCells());
+                for (int k = 0; k < 200; k++) {
+                    final int i = random.nextInt(size * size);
+                    // conflicting digits included, as a player may enter them
+                    final int digit = random.nextInt(3) == 0 ? 0 : 1 + random.nextInt(size);
+                    assertFalse(grid.set(i, digit), "no candidate was removed, nothing to reset");
+                    assertMatchesReload(grid);
+                }
+            }
+        }
+    }
+
+    @Test
+    void clearingADigitGivesBackTheRemovedCandidates() {
+        final CandidateGrid grid = new CandidateGrid(3);
+        grid.load(HintEngineTest.parse(HintEngineTest.LOCKED_CANDIDATES));
+        final int empty = HintEngineTest.LOCKED_CANDIDATES.indexOf('.');
+        final int filled = HintEngineTest.LOCKED_CANDIDATES.indexOf('1');
+        final int removed = grid.candidates(80) & -grid.candidates(80);
+        grid.eliminate(80, removed);
+        assertEquals(0, grid.candidates(80) & removed);
+
+        // placing a digit keeps the removals
+        final int digit = Integer.numberOfTrailingZeros(grid.candidates(empty)) + 1;
+        assertFalse(grid.set(empty, digit));
+        assertEquals(0, grid.candidates(80) & removed);
+
+        // clearing one resets every cell
+        assertTrue(grid.set(filled, 0));
+        assertNotEquals(0, grid.candidates(80) & removed);
+        assertMatchesReload(grid);
+        assertFalse(grid.set(empty, 0));
+        assertMatchesReload(grid);
+    }
+
+    @Test
+    void settingTheSameDigitChangesNothing() {
+        final CandidateGrid grid = new CandidateGrid(2);
+        grid.load(new int[16]);
+        grid.set(0, 1);
+        grid.eliminate(15, 1 << 1);
+        assertFalse(grid.set(0, 1));
+        assertEquals(0, grid.candidates(15) & (1 << 1));
+    }
+
+    private static void assertMatchesReload(CandidateGrid grid) {
+        final int[] cells = new int[grid.size * grid.size];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = grid.digit(i);
+        }
+        final CandidateGrid fresh = new CandidateGrid(grid.layout.box);
+        fresh.load(cells);
+        for (int i = 0; i < cells.length; i++) {
+            assertEquals(fresh.candidates(i), grid.candidates(i), "cell " + i);
+        }
+    }
+}
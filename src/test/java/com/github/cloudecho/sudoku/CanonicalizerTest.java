@@ -0,0 +1,172 @@
+package com.github.cloudecho.sudoku;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The minlex form is the same for every equivalent puzzle, no larger than any of them,
+ * and its transformation maps the puzzle and its solution both ways.
+ */
+class CanonicalizerTest {
+    private final Random random = new Random(20261018);
+
+    @Test
+    void formIsInvariantUnderTheSymmetryGroup() {
+        for (int box = Model.MIN_BOX; box <= Canonicalizer.MAX_BOX; box++) {
+            final Canonicalizer canonicalizer = new Canonicalizer(box);
+            for (int n = 0; n < 100; n++) {
+                final int[] puzzle = puzzle(box);
+                final int[] form = canonicalizer.canonicalize(puzzle).cells;
+                for (int t = 0; t < 3; t++) {
+                    final int[] equivalent = transform(box, puzzle);
+                    assertArrayEquals(form, canonicalizer.canonicalize(equivalent).cells);
+                    assertTrue(compare(form, equivalent) <= 0, "form above an equivalent puzzle");
+                }
+            }
+        }
+    }
+
+    @Test
+    void formIsTheMinimumOverTheWholeGroupOn4x4() {
+        final Canonicalizer canonicalizer = new Canonicalizer(2);
+        for (int n = 0; n < 200; n++) {
+            final int[] puzzle = puzzle(2);
+            assertArrayEquals(bruteForceMinlex(puzzle), canonicalizer.canonicalize(puzzle).cells);
+        }
+    }
+
+    @Test
+    void transformationMapsPuzzleAndSolutionBothWays() {
+        final Canonicalizer canonicalizer = new Canonicalizer(3);
+        for (int n = 0; n < 100; n++) {
+            final Model model = new Model(3);
+            model.random();
+            final int[] solution = model.toCells();
+            model.hideDigits(0.6f);
+            final int[] puzzle = model.toCells();
+
+            final Canonicalizer.Form form = canonicalizer.canonicalize(puzzle);
+            assertArrayEquals(form.cells, form.toCanonical(puzzle));
+            assertArrayEquals(puzzle, form.fromCanonical(form.cells));
+
+            final int[] canonicalSolution = form.toCanonical(solution);
+            assertArrayEquals(solution, form.fromCanonical(canonicalSolution));
+            for (int i = 0; i < puzzle.length; i++) {
+                if (form.cells[i] != 0) {
+                    assertEquals(form.cells[i], canonicalSolution[i]);
+                }
+            }
+            final Model solved = new Model(3);
+            solved.fromCells(canonicalSolution);
+            assertTrue(solved.isSolved());
+        }
+    }
+
+    @Test
+    void rejectsBoardsOfAnotherSize() {
+        assertThrows(IllegalArgumentException.class, () -> new Canonicalizer(3).canonicalize(new int[16]));
+        assertThrows(IllegalArgumentException.class, () -> new Canonicalizer(4));
+    }
+
+    private int[] puzzle(int box) {
+        final Model model = new Model(box);
+        model.random();
+        model.hideDigits(0.3f + 0.5f * random.nextFloat());
+        return model.toCells();
+    }
+
+    /**
+     * Apply a random element of the group: transposition, band and row permutations,
+     * stack and column permutations and a relabelling of the digits.
+     */
+    private int[] transform(int box, int[] puzzle) {
+        final int size = box * box;
+        final int[] rows = linePermutation(box);
+        final int[] cols = linePermutation(box);
+        final int[] digits = new int[size + 1];
+        final int[] labels = permutation(size);
+        for (int d = 1; d <= size; d++) {
+            digits[d] = labels[d - 1] + 1;
+        }
+        final boolean transpose = random.nextBoolean();
+
+        final int[] out = new int[puzzle.length];
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                final int src = transpose ? cols[c] * size + rows[r] : rows[r] * size + cols[c];
+                out[r * size + c] = digits[puzzle[src]];
+            }
+        }
+        return out;
+    }
+
+    private int[] linePermutation(int box) {
+        final int[] bands = permutation(box);
+        final int[] lines = new int[box * box];
+        for (int b = 0; b < box; b++) {
+            final int[] within = permutation(box);
+            for (int k = 0; k < box; k++) {
+                lines[b * box + k] = bands[b] * box + within[k];
+            }
+        }
+        return lines;
+    }
+
+    private int[] permutation(int n) {
+        final int[] a = new int[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            final int j = random.nextInt(i + 1);
+            final int t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+        return a;
+    }
+
+    /**
+     * The smallest puzzle over all 128 line arrangements of a 4x4 board, each relabelled by first appearance.
+     */
+    private static int[] bruteForceMinlex(int[] puzzle) {
+        final int[][] lineOrders = {
+                {0, 1, 2, 3}, {1, 0, 2, 3}, {0, 1, 3, 2}, {1, 0, 3, 2},
+                {2, 3, 0, 1}, {3, 2, 0, 1}, {2, 3, 1, 0}, {3, 2, 1, 0}};
+        int[] best = null;
+        for (int t = 0; t < 2; t++) {
+            for (int[] rows : lineOrders) {
+                for (int[] cols : lineOrders) {
+                    final int[] candidate = new int[16];
+                    final int[] labels = new int[5];
+                    int next = 1;
+                    for (int r = 0; r < 4; r++) {
+                        for (int c = 0; c < 4; c++) {
+                            final int d = t == 1 ? puzzle[cols[c] * 4 + rows[r]] : puzzle[rows[r] * 4 + cols[c]];
+                            if (d != 0 && labels[d] == 0) {
+                                labels[d] = next++;
+                            }
+                            candidate[r * 4 + c] = labels[d];
+                        }
+                    }
+                    if (best == null || compare(candidate, best) < 0) {
+                        best = candidate;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private static int compare(int[] a, int[] b) {
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) {
+                return Integer.compare(a[i], b[i]);
+            }
+        }
+        return 0;
+    }
+}
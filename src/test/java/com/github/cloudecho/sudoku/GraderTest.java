@@ -0,0 +1,91 @@
+package com.github.cloudecho.sudoku;
+
+import org.junit.jupiter.api.Test;
+
+import static com.github.cloudecho.sudoku.HintEngineTest.parse;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Grades follow the hardest technique needed, and generation hides clues down to the difficulty of a level.
+ */
+class GraderTest {
+    private final Grader grader = new Grader(3);
+
+    @Test
+    void ranksPuzzlesByTheHardestTechnique() {
+        final Grader.Grade singles = grader.grade(parse(HintEngineTest.SINGLES));
+        final Grader.Grade locked = grader.grade(parse(HintEngineTest.LOCKED_CANDIDATES));
+        final Grader.Grade pair = grader.grade(parse(HintEngineTest.NAKED_PAIR));
+        final Grader.Grade hiddenPair = grader.grade(parse(HintEngineTest.HIDDEN_PAIR));
+        final Grader.Grade xWing = grader.grade(parse(HintEngineTest.X_WING));
+        final Grader.Grade beyond = grader.grade(parse(HintEngineTest.SEVENTEEN_CLUES));
+
+        assertEquals(Technique.HIDDEN_SINGLE, singles.hardest);
+        assertEquals(Technique.LOCKED_CANDIDATES, locked.hardest);
+        assertEquals(Technique.NAKED_PAIR, pair.hardest);
+        assertEquals(Technique.HIDDEN_PAIR, hiddenPair.hardest);
+        assertEquals(Technique.X_WING, xWing.hardest);
+        assertFalse(beyond.solved);
+
+        assertEquals(Grader.EASY, singles.difficulty());
+        assertEquals(Grader.NORMAL, locked.difficulty());
+        assertEquals(Grader.NORMAL, pair.difficulty());
+        assertEquals(Grader.NORMAL, hiddenPair.difficulty());
+        assertEquals(Grader.HARD, xWing.difficulty());
+        assertEquals(Grader.HARD, beyond.difficulty());
+
+        final Grader.Grade[] ranked = {singles, locked, pair, hiddenPair, xWing, beyond};
+        for (int i = 0; i < ranked.length; i++) {
+            for (int j = 0; j < ranked.length; j++) {
+                assertEquals(Integer.signum(Integer.compare(i, j)), Integer.signum(ranked[i].compareTo(ranked[j])),
+                        ranked[i] + " vs " + ranked[j]);
+            }
+        }
+    }
+
+    @Test
+    void fullBoardNeedsNoStep() {
+        final int[] solution = parse(HintEngineTest.SINGLES);
+        assertTrue(new PropagationSolver(3).solve(solution, CancellationToken.NONE, CancellationToken.NO_DEADLINE));
+        final Grader.Grade given = grader.grade(solution);
+        assertTrue(given.solved);
+        assertNull(given.hardest);
+        assertEquals(0, given.steps);
+        assertEquals(Grader.EASY, given.difficulty());
+    }
+
+    @Test
+    void difficultyOfTheLevels() {
+        assertEquals(Grader.EASY, Grader.difficultyOf(Sudoku.EASY));
+        assertEquals(Grader.NORMAL, Grader.difficultyOf(Sudoku.NORMAL));
+        assertEquals(Grader.HARD, Grader.difficultyOf(Sudoku.HARD));
+    }
+
+    @Test
+    void easyGenerationGradesEasy() {
+        for (int n = 0; n < 20; n++) {
+            final Model puzzle = PuzzlePool.generate(3, Sudoku.EASY, 20);
+            final int[] cells = puzzle.toCells();
+            final Grader.Grade grade = grader.grade(cells);
+            assertEquals(Grader.EASY, grade.difficulty(), grade.toString());
+            assertTrue(grade.solved);
+            assertEquals(1, new PropagationSolver(3).countSolutions(cells, 2));
+        }
+    }
+
+    @Test
+    void hidingGoesOnToTheDifficulty() {
+        int reached = 0;
+        for (int n = 0; n < 20; n++) {
+            final Model puzzle = new Model(3);
+            puzzle.random();
+            final Grader.Grade grade = puzzle.hideDigits(Sudoku.EASY, Grader.NORMAL);
+            final int[] cells = puzzle.toCells();
+            assertEquals(0, grade.compareTo(grader.grade(cells)), "returned grade is the puzzle's");
+            assertEquals(1, new PropagationSolver(3).countSolutions(cells, 2));
+            reached += grade.difficulty() >= Grader.NORMAL ? 1 : 0;
+        }
+        // a quarter of the digits hidden grades easy; about half the grids can be taken on to normal
+        assertTrue(reached >= 3, reached + " of 20 reached normal");
+    }
+}
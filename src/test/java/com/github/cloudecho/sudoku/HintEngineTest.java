@@ -0,0 +1,108 @@
+package com.github.cloudecho.sudoku;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Every step of the hint engine is sound: a digit placed is the solution digit of its cell,
+ * and a candidate removed is never the solution digit.
+ */
+class HintEngineTest {
+    static final String SINGLES =
+            "...3....8..62..5...8..6..9...5.293....1....4............4537.19.......8..9.4.2..5";
+    static final String LOCKED_CANDIDATES =
+            ".....19...9...3..6..5.6....5..41...7.3..8..9..64...1.........75.1...2.8...6.4....";
+    static final String NAKED_PAIR =
+            "8..9..5..65....4....137......5.13........49...6......22.....76...9.2...3...7....4";
+    static final String HIDDEN_PAIR =
+            "....73...7..6..4...1..5.26..7..6...2...2..3.43....1........59.8.9...8...4......5.";
+    static final String X_WING =
+            "..79.5...........418....9............3.6....87...1.263..2.9.....645...3.37.4.6.8.";
+    // 17 clues, beyond the techniques of the engine
+    static final String SEVENTEEN_CLUES =
+            "........1.......23..4..5......1.........3.6....7...58.....67....1...4...2.......";
+
+    @Test
+    void stepsOfTheKnownPuzzlesAreSound() {
+        final Set<Technique> used = EnumSet.noneOf(Technique.class);
+        for (String line : new String[]{SINGLES, LOCKED_CANDIDATES, NAKED_PAIR, HIDDEN_PAIR, X_WING}) {
+            final int[] puzzle = parse(line);
+            assertTrue(replay(puzzle, used), line);
+        }
+        assertEquals(EnumSet.allOf(Technique.class), used);
+    }
+
+    @Test
+    void stepsOfRandomPuzzlesAreSound() {
+        final Set<Technique> used = EnumSet.noneOf(Technique.class);
+        for (int box = 2; box <= 3; box++) {
+            for (int n = 0; n < 200; n++) {
+                final Model model = new Model(box);
+                model.random();
+                model.hideDigits(0.75f, true);
+                replay(model.toCells(), used);
+            }
+        }
+        assertTrue(used.contains(Technique.LOCKED_CANDIDATES));
+    }
+
+    @Test
+    void stuckOnlyWhenTheBoardContradictsItself() {
+        final HintEngine engine = new HintEngine(3);
+        engine.load(parse(SEVENTEEN_CLUES));
+        for (Hint hint; (hint = engine.step()) != null; ) {
+            engine.apply(hint);
+        }
+        assertFalse(engine.solved());
+        assertFalse(engine.stuck());
+
+        // r1c8 and r1c9 can hold neither the 8 nor the 9 row 1 is missing
+        final CandidateGrid grid = new CandidateGrid(3);
+        grid.load(parse("1234567........89."));
+        assertNull(engine.next(grid));
+        assertTrue(engine.stuck());
+    }
+
+    /**
+     * Replay the engine until no step is found, checking each step against the solution.
+     *
+     * @return true if the board was filled
+     */
+    private static boolean replay(int[] puzzle, Set<Technique> used) {
+        final int box = (int) Math.round(Math.sqrt(Math.sqrt(puzzle.length)));
+        final int[] solution = puzzle.clone();
+        assertTrue(new PropagationSolver(box).solve(solution, CancellationToken.NONE, CancellationToken.NO_DEADLINE));
+
+        final HintEngine engine = new HintEngine(box);
+        engine.load(puzzle);
+        for (Hint hint; (hint = engine.step()) != null; ) {
+            used.add(hint.technique);
+            if (hint.cell >= 0) {
+                assertEquals(solution[hint.cell], hint.digit, hint.technique.label);
+            }
+            for (int k = 0; k < hint.cells.length; k++) {
+                final int bit = 1 << (solution[hint.cells[k]] - 1);
+                assertEquals(0, hint.masks[k] & bit, hint.technique.label + " removed the solution digit");
+            }
+            engine.apply(hint);
+        }
+        assertFalse(engine.stuck());
+        return engine.solved();
+    }
+
+    /**
+     * A 9x9 board, '.' for an empty cell; missing cells at the end are empty.
+     */
+    static int[] parse(String line) {
+        final int[] cells = new int[81];
+        for (int i = 0; i < line.length(); i++) {
+            final char ch = line.charAt(i);
+            cells[i] = ch == '.' ? 0 : ch - '0';
+        }
+        return cells;
+    }
+}
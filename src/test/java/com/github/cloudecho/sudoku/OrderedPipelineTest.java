@@ -0,0 +1,79 @@
+package com.github.cloudecho.sudoku;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Results reach the sink in submission order, and {@code run} returns only once the writer is done,
+ * whichever side fails.
+ */
+class OrderedPipelineTest {
+    private final ExecutorService workers = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void shutdown() {
+        workers.shutdownNow();
+    }
+
+    @Test
+    void keepsTheSubmissionOrder() throws Exception {
+        final List<Integer> out = new ArrayList<>();
+        new OrderedPipeline<Integer>(workers, 4, "test-writer").run(pipeline -> {
+            for (int i = 0; i < 200; i++) {
+                final int n = i;
+                pipeline.submit(() -> {
+                    Thread.sleep((n * 7) % 3);
+                    return n;
+                });
+            }
+        }, out::add);
+        assertEquals(200, out.size());
+        for (int i = 0; i < out.size(); i++) {
+            assertEquals(i, out.get(i).intValue());
+        }
+    }
+
+    @Test
+    void wrapsATaskFailure() {
+        final IOException e = assertThrows(IOException.class, () ->
+                new OrderedPipeline<Integer>(workers, 4, "test-writer").run(pipeline -> {
+                    pipeline.submit(() -> 1);
+                    pipeline.submit(() -> {
+                        throw new IllegalStateException("bad task");
+                    });
+                }, n -> {
+                }));
+        assertEquals("bad task", e.getCause().getMessage());
+    }
+
+    @Test
+    void feederFailureWaitsForTheWriterAndKeepsTheSinkFailure() {
+        final List<Integer> out = new ArrayList<>();
+        final IOException e = assertThrows(IOException.class, () ->
+                new OrderedPipeline<Integer>(workers, 8, "test-writer").run(pipeline -> {
+                    for (int i = 0; i < 5; i++) {
+                        final int n = i;
+                        pipeline.submit(() -> n);
+                    }
+                    throw new IOException("read error");
+                }, n -> {
+                    if (n == 3) {
+                        throw new IOException("write error");
+                    }
+                    out.add(n);
+                }));
+        assertEquals("read error", e.getMessage());
+        assertEquals(1, e.getSuppressed().length);
+        assertEquals("write error", e.getSuppressed()[0].getMessage());
+        // the writer was done before run returned
+        assertEquals(3, out.size());
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.cloudecho.sudoku;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PuzzleIndexTest {
+    private static final String PUZZLE =
+            "800000000003600000070090200050007000000045700000100030001000068008500010090000400";
+    // PUZZLE transposed, with digits 1 and 2 swapped
+    private static final String TRANSPOSED =
+            "800000000007500009030000280060002050009040000000750000001070004000003620000000800";
+
+    @Test
+    void keepsDistinctFormsAcrossGrowth() {
+        final PuzzleIndex index = new PuzzleIndex(2, 1);
+        final Canonicalizer canonicalizer = new Canonicalizer(2);
+        int added = 0;
+        for (int n = 0; n < 2000; n++) {
+            final Model model = new Model(2);
+            model.random();
+            model.hideDigits(0.5f);
+            final int[] form = canonicalizer.canonicalize(model.toCells()).cells;
+            final boolean seen = index.contains(form);
+            assertEquals(!seen, index.add(form));
+            assertTrue(index.contains(form));
+            added += seen ? 0 : 1;
+        }
+        assertEquals(added, index.size());
+    }
+
+    @Test
+    void dedupeDropsEquivalentPuzzles() throws Exception {
+        final String input = PUZZLE + "\n# comment\n" + TRANSPOSED + "\n" + PUZZLE.replace('8', '.') + "\n";
+        final StringWriter out = new StringWriter();
+        final ExecutorService workers = Executors.newFixedThreadPool(2);
+        try {
+            final long dropped = new PuzzleIndex(3).dedupe(new BufferedReader(new StringReader(input)), out, workers, 2);
+            assertEquals(1, dropped);
+        } finally {
+            workers.shutdown();
+        }
+        assertEquals(PUZZLE + "\n# comment\n" + PUZZLE.replace('8', '.') + "\n", out.toString());
+    }
+}
@@ -0,0 +1,133 @@
+package com.github.cloudecho.sudoku;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The SAT solver agrees with the propagation search on solvable and unsolvable puzzles,
+ * and its solutions are valid grids that keep the givens.
+ */
+class SatSolverTest {
+    private final Random random = new Random(20261018);
+
+    @Test
+    void agreesWithPropagationOnSolvablePuzzles() {
+        for (int box = 2; box <= 3; box++) {
+            for (int n = 0; n < 100; n++) {
+                assertAgrees(box, puzzle(box, 0.3f + 0.5f * random.nextFloat()), true);
+            }
+        }
+    }
+
+    @Test
+    void agreesWithPropagationOnUnsolvablePuzzles() {
+        for (int box = 2; box <= 3; box++) {
+            for (int n = 0; n < 50; n++) {
+                assertAgrees(box, unsolvable(box), false);
+            }
+        }
+    }
+
+    @Test
+    void rejectsGivensInConflict() {
+        final int[] puzzle = new int[81];
+        puzzle[0] = 5;
+        puzzle[8] = 5;
+        final SatSolver sat = new SatSolver(3);
+        assertFalse(sat.solve(puzzle, CancellationToken.NONE, CancellationToken.NO_DEADLINE));
+        assertFalse(sat.aborted());
+    }
+
+    @Test
+    void solves16x16() {
+        assertAgrees(4, puzzle(4, 0.5f), true);
+        assertAgrees(4, unsolvable(4), false);
+    }
+
+    @Test
+    void fillsAnEmpty25x25Board() {
+        assertSolves(5, new int[625]);
+    }
+
+    @Test
+    void stopsAtTheDeadline() {
+        final SatSolver sat = new SatSolver(5);
+        assertFalse(sat.solve(new int[625], CancellationToken.NONE, System.nanoTime()));
+        assertTrue(sat.aborted());
+    }
+
+    private void assertAgrees(int box, int[] puzzle, boolean solvable) {
+        final int count = new PropagationSolver(box).countSolutions(puzzle, 1);
+        assertEquals(solvable, count > 0, "propagation");
+        if (solvable) {
+            assertSolves(box, puzzle);
+        } else {
+            final SatSolver sat = new SatSolver(box);
+            assertFalse(sat.solve(puzzle.clone(), CancellationToken.NONE, CancellationToken.NO_DEADLINE));
+            assertFalse(sat.aborted());
+        }
+    }
+
+    private static void assertSolves(int box, int[] puzzle) {
+        final SatSolver sat = new SatSolver(box);
+        final int[] cells = puzzle.clone();
+        assertTrue(sat.solve(cells, CancellationToken.NONE, CancellationToken.NO_DEADLINE));
+        for (int i = 0; i < puzzle.length; i++) {
+            if (puzzle[i] != 0) {
+                assertEquals(puzzle[i], cells[i], "given changed");
+            }
+        }
+        final Model model = new Model(box);
+        model.fromCells(cells);
+        assertTrue(model.isSolved());
+    }
+
+    private int[] puzzle(int box, float hidden) {
+        final Model model = new Model(box);
+        model.random();
+        model.hideDigits(hidden);
+        return model.toCells();
+    }
+
+    /**
+     * A puzzle whose givens do not conflict yet have no solution: an empty cell of a puzzle is given a digit
+     * that none of its peers holds, until the propagation search proves the result unsolvable.
+     */
+    private int[] unsolvable(int box) {
+        final int size = box * box;
+        final PropagationSolver counter = new PropagationSolver(box);
+        while (true) {
+            final int[] puzzle = puzzle(box, 0.5f);
+            final int cell = random.nextInt(puzzle.length);
+            if (puzzle[cell] != 0) {
+                continue;
+            }
+            for (int d = 1; d <= size; d++) {
+                if (!seenByPeer(box, puzzle, cell, d)) {
+                    puzzle[cell] = d;
+                    if (counter.countSolutions(puzzle, 1) == 0) {
+                        return puzzle;
+                    }
+                    puzzle[cell] = 0;
+                }
+            }
+        }
+    }
+
+    private static boolean seenByPeer(int box, int[] puzzle, int cell, int digit) {
+        final int size = box * box;
+        final int r = cell / size;
+        final int c = cell % size;
+        for (int k = 0; k < size; k++) {
+            final int br = r / box * box + k / box;
+            final int bc = c / box * box + k % box;
+            if (puzzle[r * size + k] == digit || puzzle[k * size + c] == digit || puzzle[br * size + bc] == digit) {
+                return true;
+            }
+        }
+        return false;
+    }
+}